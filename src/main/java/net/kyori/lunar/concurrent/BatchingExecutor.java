@@ -0,0 +1,176 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An executor which groups submitted items into batches, and hands each batch to a single task.
+ *
+ * <p>A batch is dispatched once it holds the maximum number of items, or once the linger time
+ * has passed since its first item was submitted, whichever comes first. The handler is given
+ * the items of a batch in submission order, and must return one result per item, in the same
+ * order. Each item's future is completed with its result, or exceptionally with the failure of
+ * its batch.</p>
+ *
+ * @param <I> the item type
+ * @param <R> the result type
+ */
+public final class BatchingExecutor<I, R> {
+  private final CompletableExecutorService executorService;
+  private final ScheduledExecutorService scheduler;
+  private final int maximumBatchSize;
+  private final long lingerNanos;
+  private final Function<? super List<I>, ? extends List<? extends R>> handler;
+  private final Object lock = new Object();
+  private @Nullable Batch current;
+
+  /**
+   * Constructs a new batching executor.
+   *
+   * @param executorService the executor service to run batches on
+   * @param scheduler the scheduler dispatching batches whose linger time has passed
+   * @param maximumBatchSize the maximum number of items in a batch
+   * @param linger the longest time a batch waits for more items
+   * @param unit the time unit of the linger argument
+   * @param handler the batch handler, returning one result per item
+   * @throws IllegalArgumentException if the maximum batch size is not positive, or the linger time is negative
+   */
+  public BatchingExecutor(final @NonNull CompletableExecutorService executorService, final @NonNull ScheduledExecutorService scheduler, final int maximumBatchSize, final long linger, final @NonNull TimeUnit unit, final @NonNull Function<? super List<I>, ? extends List<? extends R>> handler) {
+    checkArgument(maximumBatchSize > 0, "the maximum batch size must be positive");
+    checkArgument(linger >= 0, "the linger time cannot be negative");
+    this.executorService = executorService;
+    this.scheduler = scheduler;
+    this.maximumBatchSize = maximumBatchSize;
+    this.lingerNanos = unit.toNanos(linger);
+    this.handler = handler;
+  }
+
+  /**
+   * Submits an item to be handled as part of a batch.
+   *
+   * @param item the item
+   * @return a future completed with the result for the item
+   * @throws RejectedExecutionException if the item starts a new batch, and the scheduler rejects its linger timer
+   */
+  public @NonNull CompletableFuture<R> submit(final @NonNull I item) {
+    final CompletableFuture<R> future = new CompletableFuture<>();
+    @Nullable Batch full = null;
+    synchronized(this.lock) {
+      Batch batch = this.current;
+      if(batch == null) {
+        batch = new Batch();
+        final Batch lingering = batch;
+        // only publish the batch once it is sure to be dispatched, as a rejected timer leaves nothing to do so
+        batch.timer = this.scheduler.schedule(() -> this.flush(lingering), this.lingerNanos, TimeUnit.NANOSECONDS);
+        this.current = batch;
+      }
+      batch.items.add(item);
+      batch.futures.add(future);
+      if(batch.items.size() == this.maximumBatchSize) {
+        full = batch;
+        this.current = null;
+      }
+    }
+    if(full != null) {
+      this.dispatch(full);
+    }
+    return future;
+  }
+
+  /**
+   * Dispatches the current batch right away, if it holds any items.
+   */
+  public void flush() {
+    final @Nullable Batch batch;
+    synchronized(this.lock) {
+      batch = this.current;
+      this.current = null;
+    }
+    if(batch != null) {
+      this.dispatch(batch);
+    }
+  }
+
+  private void flush(final @NonNull Batch expected) {
+    synchronized(this.lock) {
+      // the batch may already have been dispatched because it filled up, or was flushed
+      if(this.current != expected) {
+        return;
+      }
+      this.current = null;
+    }
+    this.dispatch(expected);
+  }
+
+  private void dispatch(final @NonNull Batch batch) {
+    final @Nullable ScheduledFuture<?> timer = batch.timer;
+    if(timer != null) {
+      timer.cancel(false);
+    }
+    final CompletableFuture<? extends List<? extends R>> results;
+    try {
+      results = this.executorService.submit(() -> this.handler.apply(batch.items));
+    } catch(final RejectedExecutionException e) {
+      batch.fail(e);
+      return;
+    }
+    results.whenComplete((values, failure) -> {
+      if(failure != null) {
+        batch.fail(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+      } else if(values == null || values.size() != batch.futures.size()) {
+        batch.fail(new IllegalStateException("Expected " + batch.futures.size() + " results, got " + (values == null ? null : values.size())));
+      } else {
+        for(int i = 0, size = values.size(); i < size; i++) {
+          batch.futures.get(i).complete(values.get(i));
+        }
+      }
+    });
+  }
+
+  private final class Batch {
+    final List<I> items = new ArrayList<>(Math.min(BatchingExecutor.this.maximumBatchSize, 1024));
+    final List<CompletableFuture<R>> futures = new ArrayList<>(Math.min(BatchingExecutor.this.maximumBatchSize, 1024));
+    @Nullable ScheduledFuture<?> timer;
+
+    void fail(final @NonNull Throwable failure) {
+      for(final CompletableFuture<R> future : this.futures) {
+        future.completeExceptionally(failure);
+      }
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A completable executor service which limits how many of its tasks may be queued or running
+ * in another executor service at once.
+ *
+ * <p>Each task takes a permit when it is handed to the delegate, and returns it once it has run.
+ * When no permit is free, the {@link Policy policy} decides what happens to the task. Permits are
+ * taken without locking unless the policy blocks.</p>
+ *
+ * @see EvenMoreExecutors#bounded(ExecutorService, int, Policy)
+ */
+public final class BoundedExecutorService extends AbstractCompletableExecutorService implements ForwardingExecutorService {
+  private final ExecutorService executorService;
+  private final Semaphore permits;
+  private final Policy policy;
+  /**
+   * The commands of the admitted tasks which have not started running yet, oldest first, only kept for {@link Policy#DROP_OLDEST}.
+   */
+  private final Waiting waiting = new Waiting();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder blocked = new LongAdder();
+  private final LongAdder callerRuns = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  BoundedExecutorService(final ExecutorService executorService, final int permits, final Policy policy) {
+    this.executorService = executorService;
+    this.permits = new Semaphore(permits);
+    this.policy = policy;
+  }
+
+  @Override
+  public @NonNull ExecutorService executorService() {
+    return this.executorService;
+  }
+
+  @Override
+  public void execute(final @NonNull Runnable command) {
+    if(!this.permits.tryAcquire()) {
+      switch(this.policy) {
+        case BLOCK:
+          this.blocked.increment();
+          try {
+            this.permits.acquire();
+          } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.reject(command, "Interrupted while waiting for a permit");
+            return;
+          }
+          break;
+        case CALLER_RUNS:
+          this.callerRuns.increment();
+          command.run();
+          return;
+        case FAIL_FAST:
+          this.reject(command, "No permit available");
+          return;
+        case DROP_OLDEST:
+          final @Nullable Runnable oldest = this.waiting.replaceOldest(command);
+          if(oldest == null) {
+            this.reject(command, "No permit available, and no waiting task to drop");
+            return;
+          }
+          this.dropped.increment();
+          this.admitted.increment();
+          if(oldest instanceof Future) {
+            ((Future<?>) oldest).cancel(false);
+          }
+          return;
+      }
+    }
+
+    // under DROP_OLDEST, each admitted task runs the oldest waiting command once it starts
+    final Admitted admitted = new Admitted(this.policy == Policy.DROP_OLDEST ? null : command);
+    if(this.policy == Policy.DROP_OLDEST) {
+      this.waiting.add(command);
+    }
+    try {
+      this.executorService.execute(admitted);
+    } catch(final RejectedExecutionException e) {
+      this.permits.release();
+      this.rejected.increment();
+      if(this.policy == Policy.DROP_OLDEST) {
+        final @Nullable Runnable abandoned = this.waiting.abandon(command);
+        // the command may have been dropped, or run by a newer task, in the meantime, in which
+        // case the newest waiting command is rejected in its place
+        if(abandoned != command) {
+          if(abandoned instanceof CompletableFuture) {
+            ((CompletableFuture<?>) abandoned).completeExceptionally(e);
+          }
+          return;
+        }
+      }
+      throw e;
+    }
+    this.admitted.increment();
+  }
+
+  private void reject(final @NonNull Runnable command, final @NonNull String message) {
+    this.rejected.increment();
+    final RejectedExecutionException exception = new RejectedExecutionException(message);
+    // submitted tasks fail through their future rather than by throwing
+    if(command instanceof CompletableFuture) {
+      ((CompletableFuture<?>) command).completeExceptionally(exception);
+      return;
+    }
+    throw exception;
+  }
+
+  /**
+   * Gets the number of admitted tasks which have not started running yet, if they are tracked.
+   *
+   * @return the number of waiting tasks
+   */
+  @VisibleForTesting
+  int waitingTasks() {
+    return this.waiting.size();
+  }
+
+  /**
+   * Gets the policy applied when no permit is free.
+   *
+   * @return the policy
+   */
+  public @NonNull Policy policy() {
+    return this.policy;
+  }
+
+  /**
+   * Gets the number of free permits.
+   *
+   * @return the number of free permits
+   */
+  public int availablePermits() {
+    return this.permits.availablePermits();
+  }
+
+  /**
+   * Gets the number of tasks handed to the delegate executor service.
+   *
+   * @return the number of admitted tasks
+   */
+  public long admittedTasks() {
+    return this.admitted.sum();
+  }
+
+  /**
+   * Gets the number of admitted tasks which have run.
+   *
+   * @return the number of completed tasks
+   */
+  public long completedTasks() {
+    return this.completed.sum();
+  }
+
+  /**
+   * Gets the number of submissions which had to wait for a permit.
+   *
+   * @return the number of blocked submissions
+   */
+  public long blockedSubmissions() {
+    return this.blocked.sum();
+  }
+
+  /**
+   * Gets the number of tasks run by the submitting thread.
+   *
+   * @return the number of tasks run by callers
+   */
+  public long callerRunTasks() {
+    return this.callerRuns.sum();
+  }
+
+  /**
+   * Gets the number of tasks rejected.
+   *
+   * @return the number of rejected tasks
+   */
+  public long rejectedTasks() {
+    return this.rejected.sum();
+  }
+
+  /**
+   * Gets the number of admitted tasks dropped to make room for newer ones.
+   *
+   * @return the number of dropped tasks
+   */
+  public long droppedTasks() {
+    return this.dropped.sum();
+  }
+
+  /**
+   * What to do with a task when no permit is free.
+   */
+  public enum Policy {
+    /**
+     * Waits for a permit. An interrupted wait rejects the task.
+     */
+    BLOCK,
+    /**
+     * Runs the task on the submitting thread.
+     */
+    CALLER_RUNS,
+    /**
+     * Rejects the task. Submitted tasks return a future failed with a
+     * {@link RejectedExecutionException}, while executed tasks throw it.
+     */
+    FAIL_FAST,
+    /**
+     * Cancels the oldest admitted task which has not started running yet, and admits the task in
+     * its place. The task is rejected as with {@link #FAIL_FAST} if every admitted task has started.
+     *
+     * <p>The task takes over the permit of the dropped task, so the delegate never holds more tasks
+     * than there are permits, and it waits behind every other admitted task: tasks start in the order
+     * they were admitted. Unlike permits, the tasks waiting to be dropped are tracked under a lock.</p>
+     */
+    DROP_OLDEST
+  }
+
+  /**
+   * A task holding a permit. Under {@link Policy#DROP_OLDEST}, it runs the oldest waiting command
+   * instead of a command of its own.
+   */
+  private final class Admitted implements Runnable {
+    private final @Nullable Runnable command;
+
+    Admitted(final @Nullable Runnable command) {
+      this.command = command;
+    }
+
+    @Override
+    public void run() {
+      final @Nullable Runnable command = this.command != null ? this.command : BoundedExecutorService.this.waiting.poll();
+      try {
+        // every waiting command has a task to run it, so one is always found
+        if(command != null) {
+          command.run();
+        }
+      } finally {
+        BoundedExecutorService.this.completed.increment();
+        BoundedExecutorService.this.permits.release();
+      }
+    }
+  }
+
+  /**
+   * The commands of the admitted tasks which have not started running yet, oldest first.
+   */
+  private static final class Waiting {
+    private final Deque<Runnable> commands = new ArrayDeque<>();
+
+    synchronized void add(final @NonNull Runnable command) {
+      this.commands.add(command);
+    }
+
+    /**
+     * Removes the oldest command, as a task starts running.
+     *
+     * @return the command, or {@code null} if no command is waiting
+     */
+    synchronized @Nullable Runnable poll() {
+      return this.commands.poll();
+    }
+
+    /**
+     * Replaces the oldest command with a new one, which waits behind every other command.
+     *
+     * @param command the new command
+     * @return the replaced command, or {@code null} if no command is waiting
+     */
+    synchronized @Nullable Runnable replaceOldest(final @NonNull Runnable command) {
+      final @Nullable Runnable oldest = this.commands.poll();
+      if(oldest != null) {
+        this.commands.add(command);
+      }
+      return oldest;
+    }
+
+    /**
+     * Removes a command whose task was rejected, or the newest command if it is no longer waiting.
+     *
+     * @param command the command
+     * @return the removed command
+     */
+    synchronized @Nullable Runnable abandon(final @NonNull Runnable command) {
+      return this.commands.removeLastOccurrence(command) ? command : this.commands.pollLast();
+    }
+
+    synchronized int size() {
+      return this.commands.size();
+    }
+  }
+}
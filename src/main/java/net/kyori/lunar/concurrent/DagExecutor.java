@@ -0,0 +1,233 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import com.google.common.graph.Graph;
+import net.kyori.lunar.graph.CyclePresentException;
+import net.kyori.lunar.graph.MoreGraphs;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An executor running a task for every node of a directed acyclic graph, where each task
+ * is submitted as soon as the tasks of all of its predecessors have completed.
+ *
+ * <p>If a task fails, the tasks of its transitive successors are never submitted. Independent
+ * tasks keep running, and the resulting future completes exceptionally once everything has
+ * settled.</p>
+ */
+public final class DagExecutor {
+  private final CompletableExecutorService executorService;
+
+  /**
+   * Constructs a new dag executor.
+   *
+   * @param executorService the executor service to run tasks on
+   */
+  public DagExecutor(final @NonNull CompletableExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  /**
+   * Runs a task for every node of a graph.
+   *
+   * @param graph the graph
+   * @param task the task to run for each node
+   * @param <T> the node type
+   * @param <R> the task result type
+   * @return a future completed with the result of every node, in topological order, or exceptionally
+   *     with the first failure, with any other failures suppressed by the {@link CompletionException} wrapping it
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public <T, R> @NonNull CompletableFuture<Map<T, R>> execute(final @NonNull Graph<T> graph, final @NonNull Function<? super T, ? extends R> task) {
+    final List<T> order = MoreGraphs.topologicalSort(graph);
+    if(order.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+    return new Execution<T, R>(graph, order, task).start();
+  }
+
+  private final class Execution<T, R> {
+    private final CompletableFuture<Map<T, R>> result = new CompletableFuture<>();
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+    /**
+     * The submissions waiting for the outermost submission of this execution on the current thread, if one is under way.
+     *
+     * <p>This is kept per execution, as a task may itself run, and wait for, another execution.</p>
+     */
+    private final ThreadLocal<Deque<Node<T, R>>> submissions = new ThreadLocal<>();
+    private final Function<? super T, ? extends R> task;
+    private final List<Node<T, R>> nodes;
+    private final AtomicInteger remaining;
+
+    Execution(final Graph<T> graph, final List<T> order, final Function<? super T, ? extends R> task) {
+      this.task = task;
+      final Map<T, Node<T, R>> nodes = new HashMap<>(order.size() * 2);
+      for(final T node : order) {
+        nodes.put(node, new Node<>(node, graph.inDegree(node)));
+      }
+      for(final Node<T, R> node : nodes.values()) {
+        node.successors = graph.successors(node.value).stream().map(nodes::get).collect(Collectors.toList());
+      }
+      this.nodes = order.stream().map(nodes::get).collect(Collectors.toList());
+      this.remaining = new AtomicInteger(order.size());
+    }
+
+    CompletableFuture<Map<T, R>> start() {
+      // collect every source before submitting, as running tasks release their successors
+      final List<Node<T, R>> sources = this.nodes.stream().filter(node -> node.pending.get() == 0).collect(Collectors.toList());
+      for(final Node<T, R> node : sources) {
+        this.submit(node);
+      }
+      return this.result;
+    }
+
+    private void submit(final Node<T, R> node) {
+      // an executor running tasks inline would complete them, and submit their successors, from
+      // within this call, so nested submissions are queued for the outermost one to make instead
+      final Deque<Node<T, R>> queued = this.submissions.get();
+      if(queued != null) {
+        queued.add(node);
+        return;
+      }
+      final Deque<Node<T, R>> submissions = new ArrayDeque<>();
+      this.submissions.set(submissions);
+      try {
+        Node<T, R> submission = node;
+        do {
+          this.submitNow(submission);
+        } while((submission = submissions.poll()) != null);
+      } finally {
+        this.submissions.remove();
+      }
+    }
+
+    private void submitNow(final Node<T, R> node) {
+      final CompletableFuture<R> future;
+      try {
+        future = this.executorService().submit(() -> this.task.apply(node.value));
+      } catch(final RuntimeException e) {
+        this.complete(node, null, e);
+        return;
+      }
+      future.whenComplete((value, error) -> this.complete(node, value, error));
+    }
+
+    private CompletableExecutorService executorService() {
+      return DagExecutor.this.executorService;
+    }
+
+    private void complete(final Node<T, R> node, final @Nullable R value, final @Nullable Throwable error) {
+      try {
+        if(error != null) {
+          final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+          node.cancelled = true;
+          this.failures.add(cause);
+        } else {
+          node.result = value;
+        }
+      } finally {
+        this.settle(node);
+      }
+    }
+
+    private void settle(final Node<T, R> node) {
+      // settling a cancelled node settles its successors too, so walk them without recursion
+      final Deque<Node<T, R>> settled = new ArrayDeque<>();
+      settled.push(node);
+      while(!settled.isEmpty()) {
+        final Node<T, R> now = settled.pop();
+        for(final Node<T, R> successor : now.successors) {
+          if(now.cancelled) {
+            successor.cancelled = true;
+          }
+          if(successor.pending.decrementAndGet() == 0) {
+            if(successor.cancelled || this.result.isDone()) {
+              successor.cancelled = true;
+              settled.push(successor);
+            } else {
+              this.submit(successor);
+            }
+          }
+        }
+        if(this.remaining.decrementAndGet() == 0) {
+          this.finish();
+        }
+      }
+    }
+
+    private void finish() {
+      final Throwable failure = this.failures.poll();
+      if(failure != null) {
+        // later failures are attached to a wrapper, as the failures themselves belong to the tasks
+        final CompletionException exception = new CompletionException(failure);
+        final Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.add(failure);
+        for(final Throwable suppressed : this.failures) {
+          if(seen.add(suppressed)) {
+            exception.addSuppressed(suppressed);
+          }
+        }
+        this.result.completeExceptionally(exception);
+        return;
+      }
+      final Map<T, R> results = new LinkedHashMap<>(this.nodes.size() * 2);
+      for(final Node<T, R> node : this.nodes) {
+        results.put(node.value, node.result);
+      }
+      this.result.complete(results);
+    }
+  }
+
+  private static final class Node<T, R> {
+    final T value;
+    final AtomicInteger pending;
+    List<Node<T, R>> successors;
+    volatile boolean cancelled;
+    @Nullable R result;
+
+    Node(final T value, final int pending) {
+      this.value = value;
+      this.pending = new AtomicInteger(pending);
+    }
+  }
+}
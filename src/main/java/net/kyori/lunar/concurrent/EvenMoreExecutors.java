@@ -28,6 +28,9 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * @see Executors
@@ -41,6 +44,8 @@ public final class EvenMoreExecutors {
    * Creates an {@link ExecutorService} whose {@code submit} and {@code invokeAll} methods submit
    * {@link RunnableCompletableFuture} instances to the given delegate executor.
    *
+   * <p>A {@link ForkJoinPool} is decorated by {@link #forkJoin(ForkJoinPool)} instead.</p>
+   *
    * @param executorService the executor service
    * @return a completable executor service
    */
@@ -48,9 +53,54 @@ public final class EvenMoreExecutors {
     if(executorService instanceof CompletableExecutorService) {
       return (CompletableExecutorService) executorService;
     }
+    if(executorService instanceof ForkJoinPool) {
+      return forkJoin((ForkJoinPool) executorService);
+    }
     return new CompletableDecorator(executorService);
   }
 
+  /**
+   * Creates an {@link ExecutorService} whose {@code submit} methods submit fork/join tasks
+   * directly to the given pool, pushing them onto the local deque when called from one of the
+   * pool's worker threads.
+   *
+   * @param pool the fork/join pool
+   * @return a completable executor service
+   */
+  public static @NonNull CompletableExecutorService forkJoin(final @NonNull ForkJoinPool pool) {
+    return new ForkJoinCompletableExecutorService(pool);
+  }
+
+  /**
+   * Creates a {@link KeyedExecutor} which runs the tasks submitted under the same key one at a
+   * time, in submission order, on the given executor.
+   *
+   * <p>No lock is shared between keys: every busy key has its own lock-free queue, which is
+   * discarded once the key has no more pending tasks.</p>
+   *
+   * @param executorService the executor service
+   * @param <K> the key type
+   * @return a keyed executor
+   */
+  public static <K> @NonNull KeyedExecutor<K> keyedSerial(final @NonNull ExecutorService executorService) {
+    return new KeyedSerialExecutor<>(executorService);
+  }
+
+  /**
+   * Creates an {@link ExecutorService} which lets at most {@code permits} of its tasks be queued
+   * or running in the given executor at once, and applies a policy to tasks submitted beyond that.
+   *
+   * @param executorService the executor service
+   * @param permits the maximum number of tasks queued or running at once
+   * @param policy the policy applied when no permit is free
+   * @return a bounded completable executor service
+   * @throws IllegalArgumentException if the number of permits is not positive
+   */
+  public static @NonNull BoundedExecutorService bounded(final @NonNull ExecutorService executorService, final int permits, final BoundedExecutorService.@NonNull Policy policy) {
+    checkArgument(permits > 0, "the number of permits must be positive");
+    return new BoundedExecutorService(executorService, permits, policy);
+  }
+
   private static final class CompletableDecorator extends AbstractCompletableExecutorService implements ForwardingExecutorService {
     private final ExecutorService executorService;
 
@@ -0,0 +1,150 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A completable executor service which submits tasks directly to a {@link ForkJoinPool}.
+ *
+ * <p>Each submission allocates the returned future and a single {@link ForkJoinTask} running the
+ * task into it, instead of a wrapping future, a callable adapter and the pool's own adapter. Tasks
+ * submitted from a worker thread of the pool are pushed onto that worker's own deque, where they
+ * are picked up without contention unless stolen.</p>
+ */
+final class ForkJoinCompletableExecutorService extends AbstractCompletableExecutorService implements ForwardingExecutorService {
+  private final ForkJoinPool pool;
+
+  ForkJoinCompletableExecutorService(final ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public @NonNull ExecutorService executorService() {
+    return this.pool;
+  }
+
+  @Override
+  public @NonNull CompletableFuture<?> submit(final @NonNull Runnable task) {
+    return this.submit(new RunnableTask<>(task, null));
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<T> submit(final @NonNull Runnable task, final @Nullable T result) {
+    return this.submit(new RunnableTask<>(task, result));
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<T> submit(final @NonNull Callable<T> task) {
+    return this.submit(new CallableTask<>(task));
+  }
+
+  private <T> @NonNull CompletableFuture<T> submit(final @NonNull Task<T> task) {
+    final Thread thread = Thread.currentThread();
+    if(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == this.pool) {
+      task.fork();
+    } else {
+      this.pool.execute(task);
+    }
+    return task.future;
+  }
+
+  @Override
+  public void execute(final @NonNull Runnable command) {
+    this.pool.execute(command);
+  }
+
+  /**
+   * A fork/join task which completes a future with its result.
+   *
+   * @param <T> the result type
+   */
+  private abstract static class Task<T> extends ForkJoinTask<Void> {
+    private static final long serialVersionUID = 1L;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    abstract T call() throws Exception;
+
+    @Override
+    protected final boolean exec() {
+      // a cancelled future is already done, and its task is skipped
+      if(!this.future.isDone()) {
+        try {
+          this.future.complete(this.call());
+        } catch(final Throwable t) {
+          this.future.completeExceptionally(t);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public final Void getRawResult() {
+      return null;
+    }
+
+    @Override
+    protected final void setRawResult(final Void value) {
+    }
+  }
+
+  private static final class CallableTask<T> extends Task<T> {
+    private static final long serialVersionUID = 1L;
+    private final Callable<T> callable;
+
+    CallableTask(final Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    @Override
+    T call() throws Exception {
+      return this.callable.call();
+    }
+  }
+
+  private static final class RunnableTask<T> extends Task<T> {
+    private static final long serialVersionUID = 1L;
+    private final Runnable runnable;
+    private final @Nullable T result;
+
+    RunnableTask(final Runnable runnable, final @Nullable T result) {
+      this.runnable = runnable;
+      this.result = result;
+    }
+
+    @Override
+    T call() {
+      this.runnable.run();
+      return this.result;
+    }
+  }
+}
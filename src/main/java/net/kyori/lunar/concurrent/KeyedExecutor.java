@@ -0,0 +1,81 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An executor which runs the tasks submitted under the same key one at a time, in submission
+ * order, while tasks under different keys may run in parallel.
+ *
+ * @param <K> the key type
+ * @see EvenMoreExecutors#keyedSerial(java.util.concurrent.ExecutorService)
+ */
+public interface KeyedExecutor<K> {
+  /**
+   * Submits a value-returning task to run after all tasks previously submitted under the same key.
+   *
+   * <p>If the underlying executor rejects the task, the returned future is completed exceptionally
+   * with a {@link RejectedExecutionException}.</p>
+   *
+   * @param key the key
+   * @param task the task to submit
+   * @param <T> the type of the task's result
+   * @return a {@code CompletableFuture} representing pending completion of the task
+   */
+  <T> @NonNull CompletableFuture<T> submit(final @NonNull K key, final @NonNull Callable<T> task);
+
+  /**
+   * Submits a task to run after all tasks previously submitted under the same key.
+   *
+   * <p>If the underlying executor rejects the task, the returned future is completed exceptionally
+   * with a {@link RejectedExecutionException}.</p>
+   *
+   * @param key the key
+   * @param task the task to submit
+   * @param result the result to return
+   * @param <T> the type of the result
+   * @return a {@code CompletableFuture} representing pending completion of the task
+   */
+  <T> @NonNull CompletableFuture<T> submit(final @NonNull K key, final @NonNull Runnable task, final @Nullable T result);
+
+  /**
+   * Submits a task to run after all tasks previously submitted under the same key.
+   *
+   * <p>If the underlying executor rejects the task, the returned future is completed exceptionally
+   * with a {@link RejectedExecutionException}.</p>
+   *
+   * @param key the key
+   * @param task the task to submit
+   * @return a {@code CompletableFuture} representing pending completion of the task
+   */
+  default @NonNull CompletableFuture<?> submit(final @NonNull K key, final @NonNull Runnable task) {
+    return this.submit(key, task, null);
+  }
+}
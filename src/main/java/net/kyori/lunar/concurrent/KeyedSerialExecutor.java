@@ -0,0 +1,183 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A keyed executor which gives every busy key a lane: a lock-free queue of tasks and a state,
+ * which is idle, running or retired.
+ *
+ * <p>A submission queues its task before reading the state, and the submission which finds the
+ * lane idle schedules it on the underlying executor. The lane then runs its tasks one after
+ * another, and retires once it finds its queue empty, after which the next submission under its
+ * key creates a fresh lane.</p>
+ *
+ * @param <K> the key type
+ */
+final class KeyedSerialExecutor<K> implements KeyedExecutor<K> {
+  /**
+   * The number of tasks a lane runs before yielding its thread back to the underlying executor.
+   */
+  private static final int BATCH_SIZE = 64;
+  private final Executor executor;
+  private final ConcurrentMap<K, Lane> lanes = new ConcurrentHashMap<>();
+
+  KeyedSerialExecutor(final Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<T> submit(final @NonNull K key, final @NonNull Callable<T> task) {
+    return this.submit(key, new RunnableCompletableFuture<>(task));
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<T> submit(final @NonNull K key, final @NonNull Runnable task, final @Nullable T result) {
+    return this.submit(key, new RunnableCompletableFuture<>(Executors.callable(task, result)));
+  }
+
+  /**
+   * Gets the number of keys with pending tasks.
+   *
+   * @return the number of busy keys
+   */
+  @VisibleForTesting
+  int busyKeys() {
+    return this.lanes.size();
+  }
+
+  private <T> @NonNull CompletableFuture<T> submit(final @NonNull K key, final @NonNull RunnableCompletableFuture<T> task) {
+    while(true) {
+      Lane lane = this.lanes.get(key);
+      if(lane == null) {
+        final Lane created = new Lane(key);
+        lane = this.lanes.putIfAbsent(key, created);
+        if(lane == null) {
+          lane = created;
+        }
+      }
+      if(lane.offer(task)) {
+        return task;
+      }
+      // the lane retired before the task was taken, so try again with a fresh one
+    }
+  }
+
+  private final class Lane extends AtomicInteger implements Runnable {
+    private static final long serialVersionUID = 1L;
+    private static final int IDLE = 0;
+    private static final int RUNNING = 1;
+    private static final int RETIRED = -1;
+    private final K key;
+    private final Queue<RunnableCompletableFuture<?>> tasks = new ConcurrentLinkedQueue<>();
+
+    Lane(final K key) {
+      this.key = key;
+    }
+
+    /**
+     * Offers a task to this lane.
+     *
+     * @param task the task
+     * @return {@code false} if this lane retired before taking the task
+     */
+    boolean offer(final RunnableCompletableFuture<?> task) {
+      // the task is queued first, so a running lane finds it before it goes idle
+      this.tasks.add(task);
+      while(true) {
+        final int state = this.get();
+        if(state == RUNNING) {
+          return true;
+        }
+        if(state == RETIRED) {
+          // nothing polls a retired lane, so the task is still queued unless the lane took it first
+          KeyedSerialExecutor.this.lanes.remove(this.key, this);
+          return !this.tasks.remove(task);
+        }
+        if(this.compareAndSet(IDLE, RUNNING)) {
+          this.schedule();
+          return true;
+        }
+      }
+    }
+
+    private void schedule() {
+      try {
+        KeyedSerialExecutor.this.executor.execute(this);
+      } catch(final RejectedExecutionException e) {
+        this.set(RETIRED);
+        KeyedSerialExecutor.this.lanes.remove(this.key, this);
+        RunnableCompletableFuture<?> task;
+        while((task = this.tasks.poll()) != null) {
+          task.completeExceptionally(e);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      for(int i = 0; i < BATCH_SIZE; i++) {
+        final RunnableCompletableFuture<?> task = this.tasks.poll();
+        if(task != null) {
+          task.run();
+        } else if(!this.resume()) {
+          return;
+        }
+      }
+      this.schedule();
+    }
+
+    /**
+     * Idles this lane once its queue is empty, and retires it unless a task was queued meanwhile.
+     *
+     * @return {@code true} if this lane should keep running
+     */
+    private boolean resume() {
+      this.set(IDLE);
+      // a task queued before the lane went idle is seen here, and a later one finds the lane idle
+      if(this.tasks.isEmpty()) {
+        if(this.compareAndSet(IDLE, RETIRED)) {
+          KeyedSerialExecutor.this.lanes.remove(this.key, this);
+        }
+        // otherwise a new task claimed the lane, and scheduled it again
+        return false;
+      }
+      return this.compareAndSet(IDLE, RUNNING);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An executor service whose tasks are only run when its owner thread calls {@link #runTick(long)},
+ * such as once per tick of a game loop.
+ *
+ * <p>Any thread may submit tasks, which are queued without locking. A tick runs the tasks which
+ * were queued when it started, until they are exhausted or its time budget is used up, and leaves
+ * the rest, as well as tasks submitted while it runs, for later ticks.</p>
+ *
+ * <p>After shutdown, queued tasks keep running on later ticks, and the executor terminates once
+ * none are left.</p>
+ */
+public final class TickExecutor extends AbstractCompletableExecutorService {
+  private final Thread owner;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pending = new AtomicLong();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private volatile boolean shutdown;
+  // only written by the owner thread
+  private volatile long drained;
+  private volatile long deferred;
+
+  /**
+   * Constructs a new tick executor owned by the current thread.
+   */
+  public TickExecutor() {
+    this(Thread.currentThread());
+  }
+
+  /**
+   * Constructs a new tick executor.
+   *
+   * @param owner the thread which runs ticks
+   */
+  public TickExecutor(final @NonNull Thread owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * Runs the tasks which are queued when this tick starts, until none are left or the time budget
+   * is used up. At least one task is run if any are queued, so ticks always make progress.
+   *
+   * @param budgetNanos the time budget, in nanoseconds
+   * @return the number of tasks run
+   * @throws IllegalStateException if not called from the owner thread
+   */
+  public int runTick(final long budgetNanos) {
+    checkState(Thread.currentThread() == this.owner, "ticks must be run by the owner thread");
+
+    final long start = System.nanoTime();
+    final long available = this.pending.get();
+    int count = 0;
+    Runnable task;
+    while(count < available && (task = this.tasks.poll()) != null) {
+      this.pending.decrementAndGet();
+      count++;
+      try {
+        task.run();
+      } catch(final RuntimeException e) {
+        this.owner.getUncaughtExceptionHandler().uncaughtException(this.owner, e);
+      }
+      if(System.nanoTime() - start >= budgetNanos) {
+        break;
+      }
+    }
+
+    this.drained += count;
+    if(count < available) {
+      this.deferred += Math.min(available - count, this.pending.get());
+    }
+    this.tryTerminate();
+    return count;
+  }
+
+  /**
+   * Gets the number of tasks run by all ticks so far.
+   *
+   * @return the number of tasks run
+   */
+  public long drainedTasks() {
+    return this.drained;
+  }
+
+  /**
+   * Gets the number of times a task which was queued at the start of a tick has been left for a
+   * later tick, because the tick ran out of time.
+   *
+   * @return the number of deferrals
+   */
+  public long deferredTasks() {
+    return this.deferred;
+  }
+
+  /**
+   * Gets the number of queued tasks.
+   *
+   * @return the number of queued tasks
+   */
+  public long pendingTasks() {
+    return this.pending.get();
+  }
+
+  @Override
+  public void execute(final @NonNull Runnable command) {
+    if(this.shutdown) {
+      throw new RejectedExecutionException("Executor has been shut down");
+    }
+    this.pending.incrementAndGet();
+    this.tasks.add(command);
+    // a shutdown racing with this submission must either see the task, or have it withdrawn here
+    if(this.shutdown && this.tasks.remove(command)) {
+      this.pending.decrementAndGet();
+      throw new RejectedExecutionException("Executor has been shut down");
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    this.shutdown = true;
+    this.tryTerminate();
+  }
+
+  @Override
+  public @NonNull List<Runnable> shutdownNow() {
+    this.shutdown = true;
+    final List<Runnable> tasks = new ArrayList<>();
+    Runnable task;
+    while((task = this.tasks.poll()) != null) {
+      this.pending.decrementAndGet();
+      tasks.add(task);
+    }
+    this.tryTerminate();
+    return tasks;
+  }
+
+  private void tryTerminate() {
+    if(this.shutdown && this.tasks.isEmpty()) {
+      this.terminated.countDown();
+    }
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return this.shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return this.terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final @NonNull TimeUnit unit) throws InterruptedException {
+    return this.terminated.await(timeout, unit);
+  }
+}
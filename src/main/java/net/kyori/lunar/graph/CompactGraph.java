@@ -0,0 +1,221 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Sets;
+import com.google.common.graph.AbstractGraph;
+import com.google.common.graph.ElementOrder;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only directed graph backed by an {@link IndexedGraph}, whose transpose holds the
+ * predecessors of every node.
+ *
+ * <p>Apart from the node to id map, the graph only keeps primitive arrays, and every view
+ * it returns is computed from those arrays on demand.</p>
+ *
+ * @param <T> the node type
+ */
+final class CompactGraph<T> extends AbstractGraph<T> {
+  private final @NonNull IndexedGraph<T> indexed;
+  private final boolean allowsSelfLoops;
+  private final @NonNull ElementOrder<T> nodeOrder;
+  private final @NonNull Set<T> nodes = new NodeSet();
+
+  private CompactGraph(final @NonNull IndexedGraph<T> indexed, final boolean allowsSelfLoops, final @NonNull ElementOrder<T> nodeOrder) {
+    this.indexed = indexed;
+    this.indexed.transpose(); // predecessors are always needed, so compute them up front
+    this.allowsSelfLoops = allowsSelfLoops;
+    this.nodeOrder = nodeOrder;
+  }
+
+  /**
+   * Creates a compact copy of a directed graph, whose nodes iterate in the same order.
+   *
+   * @param graph the graph
+   * @param <T> the node type
+   * @return the compact graph
+   */
+  static <T> @NonNull CompactGraph<T> of(final @NonNull Graph<T> graph) {
+    if(graph instanceof CompactGraph) {
+      return (CompactGraph<T>) graph;
+    }
+    return new CompactGraph<>(IndexedGraph.of(graph), graph.allowsSelfLoops(), graph.nodeOrder());
+  }
+
+  /**
+   * Creates a compact graph backed by an indexed graph.
+   *
+   * @param indexed the indexed graph
+   * @param allowsSelfLoops whether the graph allows self loops
+   * @param nodeOrder the order of the nodes, which iterate in id order
+   * @param <T> the node type
+   * @return the compact graph
+   */
+  static <T> @NonNull CompactGraph<T> of(final @NonNull IndexedGraph<T> indexed, final boolean allowsSelfLoops, final @NonNull ElementOrder<T> nodeOrder) {
+    return new CompactGraph<>(indexed, allowsSelfLoops, nodeOrder);
+  }
+
+  /**
+   * Gets the indexed form of this graph.
+   *
+   * @return the indexed graph
+   */
+  @NonNull IndexedGraph<T> indexed() {
+    return this.indexed;
+  }
+
+  @Override
+  public @NonNull Set<T> nodes() {
+    return this.nodes;
+  }
+
+  @Override
+  protected long edgeCount() {
+    return this.indexed.targets.length;
+  }
+
+  @Override
+  public boolean isDirected() {
+    return true;
+  }
+
+  @Override
+  public boolean allowsSelfLoops() {
+    return this.allowsSelfLoops;
+  }
+
+  @Override
+  public @NonNull ElementOrder<T> nodeOrder() {
+    return this.nodeOrder;
+  }
+
+  @Override
+  public @NonNull Set<T> adjacentNodes(final @NonNull Object node) {
+    return Sets.union(this.predecessors(node), this.successors(node));
+  }
+
+  @Override
+  public @NonNull Set<T> predecessors(final @NonNull Object node) {
+    final IndexedGraph<T> transposed = this.indexed.transpose();
+    return new AdjacentSet(transposed.offsets, transposed.targets, this.indexed.id(node));
+  }
+
+  @Override
+  public @NonNull Set<T> successors(final @NonNull Object node) {
+    return new AdjacentSet(this.indexed.offsets, this.indexed.targets, this.indexed.id(node));
+  }
+
+  private final class NodeSet extends AbstractSet<T> {
+    @Override
+    public @NonNull Iterator<T> iterator() {
+      return new IdIterator(null, 0, CompactGraph.this.indexed.size());
+    }
+
+    @Override
+    public int size() {
+      return CompactGraph.this.indexed.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object object) {
+      return object != null && CompactGraph.this.indexed.contains(object);
+    }
+  }
+
+  /**
+   * A view of a row of a compressed sparse row table.
+   */
+  private final class AdjacentSet extends AbstractSet<T> {
+    private final @NonNull int[] targets;
+    private final int start;
+    private final int end;
+
+    AdjacentSet(final @NonNull int[] offsets, final @NonNull int[] targets, final int id) {
+      this.targets = targets;
+      this.start = offsets[id];
+      this.end = offsets[id + 1];
+    }
+
+    @Override
+    public @NonNull Iterator<T> iterator() {
+      return new IdIterator(this.targets, this.start, this.end);
+    }
+
+    @Override
+    public int size() {
+      return this.end - this.start;
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object object) {
+      if(object == null || !CompactGraph.this.indexed.contains(object)) {
+        return false;
+      }
+      final int id = CompactGraph.this.indexed.id(object);
+      for(int i = this.start; i < this.end; i++) {
+        if(this.targets[i] == id) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * An iterator over a range of ids, or over a range of a table of ids.
+   */
+  private final class IdIterator implements Iterator<T> {
+    private final @Nullable int[] ids;
+    private final int end;
+    private int cursor;
+
+    IdIterator(final @Nullable int[] ids, final int start, final int end) {
+      this.ids = ids;
+      this.cursor = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.cursor < this.end;
+    }
+
+    @Override
+    public T next() {
+      if(this.cursor >= this.end) {
+        throw new NoSuchElementException();
+      }
+      final int index = this.cursor++;
+      return CompactGraph.this.indexed.node(this.ids == null ? index : this.ids[index]);
+    }
+  }
+}
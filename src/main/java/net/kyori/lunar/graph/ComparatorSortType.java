@@ -40,4 +40,9 @@ final class ComparatorSortType<T> implements SortType<T> {
   public @NonNull Queue<T> createQueue() {
     return new PriorityQueue<>(this.comparator);
   }
+
+  @Override
+  public @NonNull Comparator<? super T> comparator() {
+    return this.comparator;
+  }
 }
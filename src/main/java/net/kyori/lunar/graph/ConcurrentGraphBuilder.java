@@ -0,0 +1,151 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Maps;
+import com.google.common.graph.ElementOrder;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A builder of directed graphs which many threads may add nodes and edges to at once.
+ *
+ * <p>Every node owns a concurrent set of successors, so threads adding edges from different
+ * nodes never contend, and no lock is held across the whole graph.</p>
+ *
+ * <p>Once all additions are complete, {@link #build()} freezes the builder into a compact,
+ * immutable graph.</p>
+ *
+ * @param <T> the node type
+ */
+public final class ConcurrentGraphBuilder<T> {
+  private final boolean allowsSelfLoops;
+  private final @NonNull ConcurrentMap<T, Set<T>> successors = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new builder of graphs which do not allow self loops.
+   */
+  public ConcurrentGraphBuilder() {
+    this(false);
+  }
+
+  /**
+   * Constructs a new builder.
+   *
+   * @param allowsSelfLoops whether the graph allows self loops
+   */
+  public ConcurrentGraphBuilder(final boolean allowsSelfLoops) {
+    this.allowsSelfLoops = allowsSelfLoops;
+  }
+
+  /**
+   * Adds a node to the graph.
+   *
+   * @param node the node
+   * @return {@code true} if the graph was modified
+   */
+  public boolean addNode(final @NonNull T node) {
+    return this.successors.get(node) == null && this.successors.putIfAbsent(node, ConcurrentHashMap.newKeySet()) == null;
+  }
+
+  /**
+   * Adds an edge to the graph, adding its nodes if they are not present.
+   *
+   * @param source the source node
+   * @param target the target node
+   * @return {@code true} if the graph was modified
+   * @throws IllegalArgumentException if the edge is a self loop and the graph does not allow them
+   */
+  public boolean putEdge(final @NonNull T source, final @NonNull T target) {
+    checkArgument(this.allowsSelfLoops || !source.equals(target), "Cannot add self-loop on node %s", source);
+    // the target is added first, so every node seen as a successor is also seen as a node
+    this.addNode(target);
+    Set<T> successors = this.successors.get(source);
+    if(successors == null) {
+      this.addNode(source);
+      successors = this.successors.get(source);
+    }
+    return successors.add(target);
+  }
+
+  /**
+   * Gets the number of nodes added so far.
+   *
+   * @return the number of nodes
+   */
+  public int nodeCount() {
+    return this.successors.size();
+  }
+
+  /**
+   * Freezes the graph built so far into a compact, immutable directed graph.
+   *
+   * <p>Additions which happen concurrently with this call may or may not be included. The nodes
+   * of the graph are {@link ElementOrder#unordered() unordered}.</p>
+   *
+   * @return the graph
+   */
+  public @NonNull Graph<T> build() {
+    final Object[] nodes = this.successors.keySet().toArray();
+    final int size = nodes.length;
+    final Map<T, Integer> ids = Maps.newHashMapWithExpectedSize(size);
+    for(int id = 0; id < size; id++) {
+      @SuppressWarnings("unchecked")
+      final T node = (T) nodes[id];
+      ids.put(node, id);
+    }
+
+    // snapshot every row once, skipping targets added after the node snapshot was taken
+    final Object[][] rows = new Object[size][];
+    int count = 0;
+    for(int id = 0; id < size; id++) {
+      rows[id] = this.successors.get(nodes[id]).toArray();
+      count += rows[id].length;
+    }
+    final int[] offsets = new int[size + 1];
+    final int[] targets = new int[count];
+    int edge = 0;
+    for(int id = 0; id < size; id++) {
+      for(final Object successor : rows[id]) {
+        final Integer target = ids.get(successor);
+        if(target != null) {
+          targets[edge++] = target;
+        }
+      }
+      offsets[id + 1] = edge;
+    }
+
+    final int[] trimmed = edge == targets.length ? targets : Arrays.copyOf(targets, edge);
+    // nodes are listed in the iteration order of a hash map, which bears no relation to when they were added
+    return CompactGraph.of(IndexedGraph.of(nodes, ids, offsets, trimmed), this.allowsSelfLoops, ElementOrder.unordered());
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.Graph;
+import com.google.common.graph.ValueGraph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A critical path analysis of a directed acyclic graph whose nodes take time to complete.
+ *
+ * <p>A node can start once all of its predecessors have completed, and the delay of the edge
+ * from them, if any, has passed. The critical path is the longest chain of nodes, which bounds
+ * the time needed to complete the whole graph no matter how many nodes run at once.</p>
+ *
+ * <p>All values are computed in a single pass over a topological order of the graph, in each
+ * direction.</p>
+ *
+ * @param <T> the node type
+ */
+public final class CriticalPath<T> {
+  private final @NonNull IndexedGraph<T> indexed;
+  private final @NonNull long[] durations;
+  private final @NonNull long[] delays;
+  private final @NonNull long[] earliestStarts;
+  private final @NonNull long[] priorities;
+  private final long length;
+
+  private CriticalPath(final @NonNull IndexedGraph<T> indexed, final @NonNull long[] durations, final @NonNull long[] delays) {
+    this.indexed = indexed;
+    this.durations = durations;
+    this.delays = delays;
+
+    final int size = indexed.size();
+    final int[] order = MoreGraphs.sort(indexed);
+    if(order.length != size) {
+      throw MoreGraphs.cyclePresent(indexed);
+    }
+
+    this.earliestStarts = new long[size];
+    long length = 0;
+    for(final int id : order) {
+      final long finish = this.earliestStarts[id] + durations[id];
+      for(int edge = indexed.offsets[id], end = indexed.offsets[id + 1]; edge < end; edge++) {
+        final int target = indexed.targets[edge];
+        this.earliestStarts[target] = Math.max(this.earliestStarts[target], finish + delays[edge]);
+      }
+      length = Math.max(length, finish);
+    }
+    this.length = length;
+
+    this.priorities = new long[size];
+    for(int i = size - 1; i >= 0; i--) {
+      final int id = order[i];
+      long tail = 0;
+      for(int edge = indexed.offsets[id], end = indexed.offsets[id + 1]; edge < end; edge++) {
+        tail = Math.max(tail, delays[edge] + this.priorities[indexed.targets[edge]]);
+      }
+      this.priorities[id] = durations[id] + tail;
+    }
+  }
+
+  /**
+   * Analyzes a directed acyclic graph.
+   *
+   * @param graph the graph to be analyzed
+   * @param duration the function providing the non-negative duration of each node
+   * @param <T> the node type
+   * @return the critical path analysis
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed, allows self loops, or a duration is negative
+   */
+  public static <T> @NonNull CriticalPath<T> of(final @NonNull Graph<T> graph, final @NonNull ToLongFunction<? super T> duration) {
+    final IndexedGraph<T> indexed = index(graph);
+    return new CriticalPath<>(indexed, durations(indexed, duration), new long[indexed.targets.length]);
+  }
+
+  /**
+   * Analyzes a directed acyclic graph whose edges carry a delay.
+   *
+   * @param graph the graph to be analyzed
+   * @param duration the function providing the non-negative duration of each node
+   * @param delay the function providing the non-negative delay of each edge from its value
+   * @param <T> the node type
+   * @param <V> the edge value type
+   * @return the critical path analysis
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed, allows self loops, or a duration or delay is negative
+   */
+  public static <T, V> @NonNull CriticalPath<T> of(final @NonNull ValueGraph<T, V> graph, final @NonNull ToLongFunction<? super T> duration, final @NonNull ToLongFunction<? super V> delay) {
+    final IndexedGraph<T> indexed = index(graph);
+    final long[] delays = new long[indexed.targets.length];
+    for(int id = 0, size = indexed.size(); id < size; id++) {
+      final T source = indexed.node(id);
+      for(int edge = indexed.offsets[id], end = indexed.offsets[id + 1]; edge < end; edge++) {
+        delays[edge] = delay.applyAsLong(graph.edgeValue(source, indexed.node(indexed.targets[edge])));
+        checkArgument(delays[edge] >= 0, "the delay of an edge cannot be negative");
+      }
+    }
+    return new CriticalPath<>(indexed, durations(indexed, duration), delays);
+  }
+
+  private static <T> @NonNull IndexedGraph<T> index(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
+    return IndexedGraph.of(graph);
+  }
+
+  private static <T> @NonNull long[] durations(final @NonNull IndexedGraph<T> indexed, final @NonNull ToLongFunction<? super T> duration) {
+    final long[] durations = new long[indexed.size()];
+    for(int id = 0; id < durations.length; id++) {
+      durations[id] = duration.applyAsLong(indexed.node(id));
+      checkArgument(durations[id] >= 0, "the duration of a node cannot be negative");
+    }
+    return durations;
+  }
+
+  /**
+   * Gets the length of the critical path, which is the earliest time the whole graph can complete.
+   *
+   * @return the length of the critical path
+   */
+  public long length() {
+    return this.length;
+  }
+
+  /**
+   * Gets the nodes of a critical path, in order.
+   *
+   * @return the critical path
+   */
+  public @NonNull List<T> path() {
+    final List<T> path = new ArrayList<>();
+    int now = -1;
+    for(int id = 0, size = this.indexed.size(); id < size && now == -1; id++) {
+      if(this.earliestStarts[id] == 0 && this.priorities[id] == this.length) {
+        now = id;
+      }
+    }
+    while(now != -1) {
+      path.add(this.indexed.node(now));
+      final long tail = this.priorities[now] - this.durations[now];
+      int next = -1;
+      for(int edge = this.indexed.offsets[now], end = this.indexed.offsets[now + 1]; edge < end; edge++) {
+        if(this.delays[edge] + this.priorities[this.indexed.targets[edge]] == tail) {
+          next = this.indexed.targets[edge];
+          break;
+        }
+      }
+      now = next;
+    }
+    return path;
+  }
+
+  /**
+   * Gets the earliest time a node can start.
+   *
+   * @param node the node
+   * @return the earliest start time
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public long earliestStart(final @NonNull T node) {
+    return this.earliestStarts[this.indexed.id(node)];
+  }
+
+  /**
+   * Gets the latest time a node can start without delaying the completion of the whole graph.
+   *
+   * @param node the node
+   * @return the latest start time
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public long latestStart(final @NonNull T node) {
+    return this.length - this.priorities[this.indexed.id(node)];
+  }
+
+  /**
+   * Gets how long a node can be delayed without delaying the completion of the whole graph.
+   *
+   * <p>Nodes on a critical path have no slack.</p>
+   *
+   * @param node the node
+   * @return the slack
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public long slack(final @NonNull T node) {
+    final int id = this.indexed.id(node);
+    return this.length - this.priorities[id] - this.earliestStarts[id];
+  }
+
+  /**
+   * Gets the scheduling priority of a node, which is the length of the longest path from its
+   * start to the completion of the whole graph.
+   *
+   * @param node the node
+   * @return the priority
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public long priority(final @NonNull T node) {
+    return this.priorities[this.indexed.id(node)];
+  }
+
+  /**
+   * Sorts the graph into a list, where among the nodes whose prerequisites are met, the node
+   * with the highest {@link #priority(Object) priority} comes first.
+   *
+   * <p>Starting nodes in this order runs the longest chains first.</p>
+   *
+   * @return the sorted list
+   */
+  public @NonNull List<T> priorityOrder() {
+    final int[] order = MoreGraphs.sort(this.indexed, RankedQueue.descending(this.priorities));
+    final List<T> results = new ArrayList<>(order.length);
+    for(final int id : order) {
+      results.add(this.indexed.node(id));
+    }
+    return results;
+  }
+}
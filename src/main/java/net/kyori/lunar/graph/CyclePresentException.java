@@ -23,9 +23,14 @@
  */
 package net.kyori.lunar.graph;
 
+import com.google.common.collect.Collections2;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * A class of exception indicating that a failure of topological sort comes from the
@@ -36,28 +41,93 @@ import java.util.Collection;
  * component; their existence makes topological sort impossible (unless the components
  * are single nodes).</p>
  *
+ * <p>The message is only rendered when first requested, and lists at most
+ * {@value #MAXIMUM_RENDERED_NODES} nodes and {@value #MAXIMUM_RENDERED_LENGTH} characters
+ * of the cycles, summarizing the rest.</p>
+ *
  * <p>The class cannot carry a generic type because of Java limitations on
  * {@link Throwable} classes. However, {@link #components()} still allows you to
  * restore the generic types.</p>
  */
 public final class CyclePresentException extends IllegalArgumentException {
+  /**
+   * The maximum number of nodes listed in the message.
+   */
+  public static final int MAXIMUM_RENDERED_NODES = 64;
+  /**
+   * The maximum number of characters of the message describing the cycles.
+   */
+  public static final int MAXIMUM_RENDERED_LENGTH = 4096;
+  private final @NonNull String summary;
   /**
    * This special generic type eases the transition from and to
    * {@code Collection<Collection<T>>}.
    */
   private final @NonNull Collection<? extends Collection<?>> components;
+  private volatile @MonotonicNonNull String message;
 
   /**
    * Constructs the exception. Only used by the topological sorters.
    *
-   * @param message the error message
+   * @param summary the error message, to which the cycles are appended
    * @param components the collection of strongly connected components
    */
-  CyclePresentException(final @NonNull String message, final @NonNull Collection<? extends Collection<?>> components) {
-    super(message);
+  CyclePresentException(final @NonNull String summary, final @NonNull Collection<? extends Collection<?>> components) {
+    this.summary = summary;
     this.components = components;
   }
 
+  @Override
+  public @NonNull String getMessage() {
+    String message = this.message;
+    if(message == null) {
+      message = this.render();
+      this.message = message;
+    }
+    return message;
+  }
+
+  private @NonNull String render() {
+    final StringBuilder reporter = new StringBuilder(this.summary).append(':').append(' ');
+    final int limit = reporter.length() + MAXIMUM_RENDERED_LENGTH;
+    int nodes = 0;
+    int skipped = 0;
+    for(final Collection<?> component : this.components) {
+      if(component.size() <= 1) {
+        continue;
+      }
+      if(nodes >= MAXIMUM_RENDERED_NODES || reporter.length() >= limit) {
+        skipped++;
+        continue;
+      }
+      reporter.append('{');
+      int rendered = 0;
+      for(final Object each : component) {
+        if(nodes >= MAXIMUM_RENDERED_NODES || reporter.length() >= limit) {
+          break;
+        }
+        if(rendered > 0) {
+          reporter.append(',').append(' ');
+        }
+        reporter.append(Objects.toString(each));
+        rendered++;
+        nodes++;
+      }
+      if(reporter.length() > limit) {
+        reporter.setLength(limit);
+        reporter.append("...");
+      }
+      if(rendered < component.size()) {
+        reporter.append(", ... (").append(component.size() - rendered).append(" more)");
+      }
+      reporter.append('}').append(';');
+    }
+    if(skipped > 0) {
+      reporter.append(" ... (").append(skipped).append(" more cycles)");
+    }
+    return reporter.toString();
+  }
+
   /**
    * Accesses the strongly connected components.
    *
@@ -65,10 +135,14 @@ public final class CyclePresentException extends IllegalArgumentException {
    * of topological sorting.</p>
    *
    * @param <T> the node type restored
-   * @return the strongly connected components
+   * @return an unmodifiable view of the strongly connected components
    */
   @SuppressWarnings("unchecked")
   public <T> @NonNull Collection<Collection<T>> components() {
-    return (Collection<Collection<T>>) this.components;
+    return Collections.unmodifiableCollection(Collections2.transform((Collection<Collection<T>>) this.components, CyclePresentException::view));
+  }
+
+  private static <T> @NonNull Collection<T> view(final @NonNull Collection<T> component) {
+    return component instanceof List ? Collections.unmodifiableList((List<T>) component) : Collections.unmodifiableCollection(component);
   }
 }
@@ -0,0 +1,292 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The dominator tree of a directed graph, rooted at one of its nodes.
+ *
+ * <p>A node {@code a} dominates a node {@code b} if every path from the root to {@code b} goes
+ * through {@code a}. Every node dominates itself. Nodes which cannot be reached from the root
+ * have no dominators, and dominate nothing.</p>
+ *
+ * <p>Immediate dominators are computed with the Lengauer-Tarjan algorithm, with path compression
+ * done iteratively. The tree is then numbered in pre-order, and every node records where its
+ * subtree ends, so dominance is answered in constant time, and the nodes dominated by a node form
+ * a contiguous range of the pre-order.</p>
+ *
+ * <p>The tree is a snapshot: it does not reflect later modifications of the graph.</p>
+ *
+ * @param <T> the node type
+ */
+public final class DominatorTree<T> {
+  private static final int NONE = -1;
+  private final @NonNull IndexedGraph<T> graph;
+  private final @NonNull int[] dominators;
+  private final @NonNull int[] pre;
+  private final @NonNull int[] end;
+  private final @NonNull int[] preorder;
+
+  private DominatorTree(final @NonNull IndexedGraph<T> graph, final int root) {
+    this.graph = graph;
+    final int size = graph.size();
+
+    // number the nodes reachable from the root in depth-first pre-order
+    final int[] number = new int[size];
+    Arrays.fill(number, NONE);
+    final int[] vertex = new int[size];
+    final int[] parent = new int[size];
+    final int[] cursor = new int[size];
+    final int[] stack = new int[size];
+    int count = 0;
+    int depth = 0;
+    number[root] = count;
+    vertex[count++] = root;
+    parent[0] = NONE;
+    cursor[root] = graph.offsets[root];
+    stack[depth++] = root;
+    while(depth > 0) {
+      final int now = stack[depth - 1];
+      if(cursor[now] == graph.offsets[now + 1]) {
+        depth--;
+        continue;
+      }
+      final int next = graph.targets[cursor[now]++];
+      if(number[next] == NONE) {
+        number[next] = count;
+        vertex[count] = next;
+        parent[count] = number[now];
+        count++;
+        cursor[next] = graph.offsets[next];
+        stack[depth++] = next;
+      }
+    }
+
+    // the rest works on pre-order numbers
+    final int[] semi = new int[count];
+    final int[] label = new int[count];
+    final int[] ancestor = new int[count];
+    final int[] idom = new int[count];
+    final int[] bucket = new int[count];
+    final int[] next = new int[count];
+    for(int v = 0; v < count; v++) {
+      semi[v] = v;
+      label[v] = v;
+      ancestor[v] = NONE;
+    }
+    Arrays.fill(bucket, NONE);
+    final IndexedGraph<T> transposed = graph.transpose();
+    for(int w = count - 1; w > 0; w--) {
+      final int id = vertex[w];
+      for(int edge = transposed.offsets[id], end = transposed.offsets[id + 1]; edge < end; edge++) {
+        final int v = number[transposed.targets[edge]];
+        if(v != NONE) {
+          final int u = evaluate(v, semi, label, ancestor, stack);
+          if(semi[u] < semi[w]) {
+            semi[w] = semi[u];
+          }
+        }
+      }
+      next[w] = bucket[semi[w]];
+      bucket[semi[w]] = w;
+      final int p = parent[w];
+      ancestor[w] = p;
+      for(int v = bucket[p]; v != NONE; v = next[v]) {
+        final int u = evaluate(v, semi, label, ancestor, stack);
+        idom[v] = semi[u] < semi[v] ? u : p;
+      }
+      bucket[p] = NONE;
+    }
+    for(int w = 1; w < count; w++) {
+      if(idom[w] != semi[w]) {
+        idom[w] = idom[idom[w]];
+      }
+    }
+
+    this.dominators = new int[size];
+    Arrays.fill(this.dominators, NONE);
+    for(int w = 1; w < count; w++) {
+      this.dominators[vertex[w]] = vertex[idom[w]];
+    }
+
+    // number the dominator tree, whose children are grouped by their immediate dominator
+    final int[] offsets = new int[count + 1];
+    for(int w = 1; w < count; w++) {
+      offsets[idom[w] + 1]++;
+    }
+    for(int v = 0; v < count; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    final int[] children = new int[Math.max(count - 1, 0)];
+    Arrays.fill(cursor, 0);
+    for(int w = 1; w < count; w++) {
+      children[offsets[idom[w]] + cursor[idom[w]]++] = w;
+    }
+    this.pre = new int[size];
+    this.end = new int[size];
+    Arrays.fill(this.pre, NONE);
+    this.preorder = new int[count];
+    Arrays.fill(cursor, 0, count, 0);
+    int preCount = 0;
+    depth = 0;
+    stack[depth++] = 0;
+    this.pre[root] = preCount;
+    this.preorder[preCount++] = root;
+    while(depth > 0) {
+      final int v = stack[depth - 1];
+      if(offsets[v] + cursor[v] == offsets[v + 1]) {
+        this.end[vertex[v]] = preCount;
+        depth--;
+        continue;
+      }
+      final int child = children[offsets[v] + cursor[v]++];
+      this.pre[vertex[child]] = preCount;
+      this.preorder[preCount++] = vertex[child];
+      stack[depth++] = child;
+    }
+  }
+
+  /**
+   * Finds the node with the lowest semi-dominator on the compressed forest path above a node.
+   */
+  private static int evaluate(final int v, final @NonNull int[] semi, final @NonNull int[] label, final @NonNull int[] ancestor, final @NonNull int[] stack) {
+    if(ancestor[v] == NONE) {
+      return v;
+    }
+    int depth = 0;
+    int x = v;
+    while(ancestor[ancestor[x]] != NONE) {
+      stack[depth++] = x;
+      x = ancestor[x];
+    }
+    // compress from the top of the path down, as the recursive formulation would
+    while(depth > 0) {
+      x = stack[--depth];
+      final int a = ancestor[x];
+      if(semi[label[a]] < semi[label[x]]) {
+        label[x] = label[a];
+      }
+      ancestor[x] = ancestor[a];
+    }
+    return label[v];
+  }
+
+  /**
+   * Computes the dominator tree of a directed graph.
+   *
+   * @param graph the graph
+   * @param root the root node
+   * @param <T> the node type
+   * @return the dominator tree
+   * @throws IllegalArgumentException if the graph is not directed, or the root is not an element of the graph
+   */
+  public static <T> @NonNull DominatorTree<T> of(final @NonNull Graph<T> graph, final @NonNull T root) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    return new DominatorTree<>(indexed, indexed.id(root));
+  }
+
+  /**
+   * Gets the root node.
+   *
+   * @return the root node
+   */
+  public @NonNull T root() {
+    return this.graph.node(this.preorder[0]);
+  }
+
+  /**
+   * Tests if a node can be reached from the root.
+   *
+   * @param node the node
+   * @return {@code true} if the node can be reached from the root
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public boolean reachable(final @NonNull T node) {
+    return this.pre[this.graph.id(node)] != NONE;
+  }
+
+  /**
+   * Gets the immediate dominator of a node.
+   *
+   * @param node the node
+   * @return the immediate dominator, or {@link Optional#empty()} for the root and for nodes which cannot be reached from it
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public @NonNull Optional<T> immediateDominator(final @NonNull T node) {
+    final int dominator = this.dominators[this.graph.id(node)];
+    return dominator == NONE ? Optional.empty() : Optional.of(this.graph.node(dominator));
+  }
+
+  /**
+   * Tests if a node dominates another.
+   *
+   * @param dominator the dominating node
+   * @param node the dominated node
+   * @return {@code true} if {@code dominator} dominates {@code node}
+   * @throws IllegalArgumentException if either node is not an element of the graph
+   */
+  public boolean dominates(final @NonNull T dominator, final @NonNull T node) {
+    final int a = this.graph.id(dominator);
+    final int b = this.graph.id(node);
+    return this.pre[a] != NONE && this.pre[b] != NONE && this.pre[a] <= this.pre[b] && this.pre[b] < this.end[a];
+  }
+
+  /**
+   * Gets the nodes dominated by a node, including itself, in pre-order of the dominator tree.
+   *
+   * @param node the node
+   * @return the dominated nodes, or an empty list if the node cannot be reached from the root
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public @NonNull List<T> dominated(final @NonNull T node) {
+    final int id = this.graph.id(node);
+    if(this.pre[id] == NONE) {
+      return Collections.emptyList();
+    }
+    final int start = this.pre[id];
+    final int end = this.end[id];
+    return new AbstractList<T>() {
+      @Override
+      public T get(final int index) {
+        return DominatorTree.this.graph.node(DominatorTree.this.preorder[start + index]);
+      }
+
+      @Override
+      public int size() {
+        return end - start;
+      }
+    };
+  }
+}
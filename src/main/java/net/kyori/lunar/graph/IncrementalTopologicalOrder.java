@@ -0,0 +1,249 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.MutableGraph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A topological order of a mutable graph, which is kept up to date as the graph is modified.
+ *
+ * <p>This is based on the dynamic topological sort algorithm of Pearce and Kelly. Inserting
+ * an edge only reorders the nodes positioned between its endpoints which are affected by it,
+ * and removing an edge never changes the order.</p>
+ *
+ * <p>The graph must only be modified through this class after it is wrapped.</p>
+ *
+ * @param <T> the node type
+ */
+public final class IncrementalTopologicalOrder<T> {
+  private final @NonNull MutableGraph<T> graph;
+  private final @NonNull List<T> order;
+  private final @NonNull Map<T, Integer> positions = new HashMap<>();
+
+  /**
+   * Constructs a new incremental topological order.
+   *
+   * @param graph the graph to be sorted
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public IncrementalTopologicalOrder(final @NonNull MutableGraph<T> graph) {
+    this.graph = graph;
+    this.order = new ArrayList<>(MoreGraphs.topologicalSort(graph));
+    for(int i = 0, size = this.order.size(); i < size; i++) {
+      this.positions.put(this.order.get(i), i);
+    }
+  }
+
+  /**
+   * Gets the graph.
+   *
+   * @return the graph
+   */
+  public @NonNull MutableGraph<T> graph() {
+    return this.graph;
+  }
+
+  /**
+   * Gets an unmodifiable view of the current order.
+   *
+   * @return the sorted list
+   */
+  public @NonNull List<T> order() {
+    return Collections.unmodifiableList(this.order);
+  }
+
+  /**
+   * Adds a node to the graph, placing it at the end of the order.
+   *
+   * @param node the node
+   * @return {@code true} if the graph was modified
+   */
+  public boolean addNode(final @NonNull T node) {
+    if(!this.graph.addNode(node)) {
+      return false;
+    }
+    this.positions.put(node, this.order.size());
+    this.order.add(node);
+    return true;
+  }
+
+  /**
+   * Removes a node and all of its edges from the graph.
+   *
+   * @param node the node
+   * @return {@code true} if the graph was modified
+   */
+  public boolean removeNode(final @NonNull T node) {
+    if(!this.graph.removeNode(node)) {
+      return false;
+    }
+    final int position = this.positions.remove(node);
+    this.order.remove(position);
+    for(int i = position, size = this.order.size(); i < size; i++) {
+      this.positions.put(this.order.get(i), i);
+    }
+    return true;
+  }
+
+  /**
+   * Adds an edge to the graph, adding its nodes if they are not already present.
+   *
+   * @param source the source node
+   * @param target the target node
+   * @return {@code true} if the graph was modified
+   * @throws CyclePresentException if the edge would close a cycle, in which case the graph is not modified
+   * @throws IllegalArgumentException if the source and target are equal
+   */
+  public boolean putEdge(final @NonNull T source, final @NonNull T target) {
+    checkArgument(!source.equals(target), "the graph cannot allow self loops");
+    this.addNode(source);
+    this.addNode(target);
+
+    final int lower = this.positions.get(target);
+    final int upper = this.positions.get(source);
+    if(lower < upper) {
+      final List<T> forward = this.forward(source, target, upper);
+      final List<T> backward = this.backward(source, lower);
+      this.reorder(backward, forward);
+    }
+    return this.graph.putEdge(source, target);
+  }
+
+  /**
+   * Removes an edge from the graph. The order remains valid, and is not changed.
+   *
+   * @param source the source node
+   * @param target the target node
+   * @return {@code true} if the graph was modified
+   */
+  public boolean removeEdge(final @NonNull T source, final @NonNull T target) {
+    return this.graph.removeEdge(source, target);
+  }
+
+  /**
+   * Collects the nodes reachable from {@code target} positioned no later than {@code upper}.
+   *
+   * @param source the source of the new edge
+   * @param target the target of the new edge
+   * @param upper the position of the source
+   * @return the affected nodes
+   * @throws CyclePresentException if the source is reachable from the target
+   */
+  private @NonNull List<T> forward(final @NonNull T source, final @NonNull T target, final int upper) {
+    final Map<T, T> parents = new HashMap<>();
+    final Deque<T> stack = new ArrayDeque<>();
+    final List<T> visited = new ArrayList<>();
+    parents.put(target, target);
+    stack.push(target);
+    while(!stack.isEmpty()) {
+      final T now = stack.pop();
+      visited.add(now);
+      for(final T successor : this.graph.successors(now)) {
+        if(successor.equals(source)) {
+          final List<T> cycle = new ArrayList<>();
+          for(T node = now; !node.equals(target); node = parents.get(node)) {
+            cycle.add(node);
+          }
+          cycle.add(target);
+          cycle.add(source);
+          Collections.reverse(cycle);
+          throw new CyclePresentException("Edge (" + source + " -> " + target + ") would close a cycle", Collections.singletonList(cycle));
+        }
+        if(this.positions.get(successor) < upper && !parents.containsKey(successor)) {
+          parents.put(successor, now);
+          stack.push(successor);
+        }
+      }
+    }
+    return visited;
+  }
+
+  /**
+   * Collects the nodes {@code source} is reachable from positioned later than {@code lower}.
+   *
+   * @param source the source of the new edge
+   * @param lower the position of the target
+   * @return the affected nodes
+   */
+  private @NonNull List<T> backward(final @NonNull T source, final int lower) {
+    final Set<T> seen = new HashSet<>();
+    final Deque<T> stack = new ArrayDeque<>();
+    final List<T> visited = new ArrayList<>();
+    seen.add(source);
+    stack.push(source);
+    while(!stack.isEmpty()) {
+      final T now = stack.pop();
+      visited.add(now);
+      for(final T predecessor : this.graph.predecessors(now)) {
+        if(this.positions.get(predecessor) > lower && seen.add(predecessor)) {
+          stack.push(predecessor);
+        }
+      }
+    }
+    return visited;
+  }
+
+  /**
+   * Moves the backward affected nodes ahead of the forward affected nodes, reusing their positions.
+   *
+   * @param backward the nodes which must precede the new edge's target
+   * @param forward the nodes which must succeed the new edge's source
+   */
+  private void reorder(final @NonNull List<T> backward, final @NonNull List<T> forward) {
+    final Comparator<T> byPosition = Comparator.comparingInt(this.positions::get);
+    backward.sort(byPosition);
+    forward.sort(byPosition);
+
+    final List<T> nodes = new ArrayList<>(backward.size() + forward.size());
+    nodes.addAll(backward);
+    nodes.addAll(forward);
+    final int[] slots = new int[nodes.size()];
+    for(int i = 0; i < slots.length; i++) {
+      slots[i] = this.positions.get(nodes.get(i));
+    }
+    Arrays.sort(slots);
+
+    for(int i = 0; i < slots.length; i++) {
+      final T node = nodes.get(i);
+      this.order.set(slots[i], node);
+      this.positions.put(node, slots[i]);
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Maps;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A snapshot of a graph where each node is assigned a dense integer id, and the successors
+ * of every node are stored in compressed sparse row form.
+ *
+ * <p>The successors of the node with id {@code i} are {@code targets[offsets[i]]} (inclusive)
+ * to {@code targets[offsets[i + 1]]} (exclusive), in the iteration order of
+ * {@link Graph#successors(Object)}. Ids are assigned in the iteration order of {@link Graph#nodes()}.</p>
+ *
+ * <p>Indexing a {@link CompactGraph} is free, as it is already backed by an indexed graph. Indexing
+ * a {@link MappedGraph} copies its adjacency tables once instead of walking its adjacency views.</p>
+ *
+ * @param <T> the node type
+ */
+final class IndexedGraph<T> {
+  private final @NonNull Object[] nodes;
+  private final @NonNull Map<T, Integer> ids;
+  final @NonNull int[] offsets;
+  final @NonNull int[] targets;
+  private @MonotonicNonNull IndexedGraph<T> transposed;
+
+  private IndexedGraph(final @NonNull Object[] nodes, final @NonNull Map<T, Integer> ids, final @NonNull int[] offsets, final @NonNull int[] targets) {
+    this.nodes = nodes;
+    this.ids = ids;
+    this.offsets = offsets;
+    this.targets = targets;
+  }
+
+  /**
+   * Creates an indexed snapshot of a graph.
+   *
+   * @param graph the graph
+   * @param <T> the node type
+   * @return the indexed graph
+   */
+  static <T> @NonNull IndexedGraph<T> of(final @NonNull Graph<T> graph) {
+    if(graph instanceof CompactGraph) {
+      return ((CompactGraph<T>) graph).indexed();
+    }
+    if(graph instanceof MappedGraph) {
+      return ((MappedGraph<T>) graph).indexed();
+    }
+
+    final int size = graph.nodes().size();
+    final Object[] nodes = new Object[size];
+    final Map<T, Integer> ids = Maps.newHashMapWithExpectedSize(size);
+    final int[] offsets = new int[size + 1];
+
+    int id = 0;
+    for(final T node : graph.nodes()) {
+      nodes[id] = node;
+      ids.put(node, id);
+      offsets[id + 1] = offsets[id] + graph.outDegree(node);
+      id++;
+    }
+
+    final int[] targets = new int[offsets[size]];
+    int edge = 0;
+    for(int i = 0; i < size; i++) {
+      for(final Object successor : graph.successors(nodes[i])) {
+        targets[edge++] = ids.get(successor);
+      }
+    }
+    return new IndexedGraph<>(nodes, ids, offsets, targets);
+  }
+
+  /**
+   * Creates an indexed graph from its parts, which are not copied.
+   *
+   * @param nodes the nodes, indexed by id
+   * @param ids the ids, keyed by node
+   * @param offsets the successor offsets
+   * @param targets the successor ids
+   * @param <T> the node type
+   * @return the indexed graph
+   */
+  static <T> @NonNull IndexedGraph<T> of(final @NonNull Object[] nodes, final @NonNull Map<T, Integer> ids, final @NonNull int[] offsets, final @NonNull int[] targets) {
+    return new IndexedGraph<>(nodes, ids, offsets, targets);
+  }
+
+  /**
+   * Creates an indexed graph and its transpose from their parts, which are not copied.
+   *
+   * @param nodes the nodes, indexed by id
+   * @param ids the ids, keyed by node
+   * @param offsets the successor offsets
+   * @param targets the successor ids
+   * @param predecessorOffsets the predecessor offsets
+   * @param predecessorTargets the predecessor ids, in ascending order for each node
+   * @param <T> the node type
+   * @return the indexed graph
+   */
+  static <T> @NonNull IndexedGraph<T> of(final @NonNull Object[] nodes, final @NonNull Map<T, Integer> ids, final @NonNull int[] offsets, final @NonNull int[] targets, final @NonNull int[] predecessorOffsets, final @NonNull int[] predecessorTargets) {
+    final IndexedGraph<T> graph = new IndexedGraph<>(nodes, ids, offsets, targets);
+    final IndexedGraph<T> transposed = new IndexedGraph<>(nodes, ids, predecessorOffsets, predecessorTargets);
+    graph.transposed = transposed;
+    transposed.transposed = graph;
+    return graph;
+  }
+
+  /**
+   * Creates an indexed graph with the nodes and ids of this graph, and other edges.
+   *
+   * @param offsets the successor offsets
+   * @param targets the successor ids
+   * @return the indexed graph
+   */
+  @NonNull IndexedGraph<T> withEdges(final @NonNull int[] offsets, final @NonNull int[] targets) {
+    return new IndexedGraph<>(this.nodes, this.ids, offsets, targets);
+  }
+
+  /**
+   * Creates an indexed snapshot of the subgraph of a graph induced by some of its nodes.
+   *
+   * <p>Only the edges between the given nodes are kept. Ids are assigned in the iteration
+   * order of the given nodes.</p>
+   *
+   * @param graph the graph
+   * @param nodes the nodes of the subgraph
+   * @param <T> the node type
+   * @return the indexed subgraph
+   */
+  static <T> @NonNull IndexedGraph<T> of(final @NonNull Graph<T> graph, final @NonNull Collection<T> nodes) {
+    final int size = nodes.size();
+    final Object[] array = nodes.toArray();
+    final Map<T, Integer> ids = Maps.newHashMapWithExpectedSize(size);
+    for(int id = 0; id < size; id++) {
+      @SuppressWarnings("unchecked")
+      final T node = (T) array[id];
+      ids.put(node, id);
+    }
+
+    final int[] offsets = new int[size + 1];
+    int[] targets = new int[size];
+    int edge = 0;
+    for(int id = 0; id < size; id++) {
+      for(final Object successor : graph.successors(array[id])) {
+        final Integer target = ids.get(successor);
+        if(target != null) {
+          if(edge == targets.length) {
+            targets = Arrays.copyOf(targets, Math.max(edge * 2, 16));
+          }
+          targets[edge++] = target;
+        }
+      }
+      offsets[id + 1] = edge;
+    }
+    return new IndexedGraph<>(array, ids, offsets, edge == targets.length ? targets : Arrays.copyOf(targets, edge));
+  }
+
+  /**
+   * Gets the transpose of this graph, sharing its nodes and ids. The successors of each node
+   * in the transpose are its predecessors in this graph, listed in ascending id order.
+   *
+   * <p>The transpose is computed once, on first use.</p>
+   *
+   * @return the transposed graph
+   */
+  @NonNull IndexedGraph<T> transpose() {
+    // racing threads compute equal transposes, and the fields of each are final
+    IndexedGraph<T> transposed = this.transposed;
+    if(transposed == null) {
+      transposed = this.createTranspose();
+      this.transposed = transposed;
+    }
+    return transposed;
+  }
+
+  private @NonNull IndexedGraph<T> createTranspose() {
+    final int size = this.nodes.length;
+    final int[] offsets = new int[size + 1];
+    final int[] targets = new int[this.targets.length];
+    for(final int target : this.targets) {
+      offsets[target + 1]++;
+    }
+    for(int id = 0; id < size; id++) {
+      offsets[id + 1] += offsets[id];
+    }
+    final int[] cursor = new int[size];
+    for(int id = 0; id < size; id++) {
+      for(int edge = this.offsets[id], end = this.offsets[id + 1]; edge < end; edge++) {
+        final int target = this.targets[edge];
+        targets[offsets[target] + cursor[target]++] = id;
+      }
+    }
+    final IndexedGraph<T> transposed = new IndexedGraph<>(this.nodes, this.ids, offsets, targets);
+    transposed.transposed = this;
+    return transposed;
+  }
+
+  /**
+   * Gets the number of nodes.
+   *
+   * @return the number of nodes
+   */
+  @NonNegative int size() {
+    return this.nodes.length;
+  }
+
+  /**
+   * Gets the node with the given id.
+   *
+   * @param id the id
+   * @return the node
+   */
+  @SuppressWarnings("unchecked")
+  @NonNull T node(final @NonNegative int id) {
+    return (T) this.nodes[id];
+  }
+
+  /**
+   * Tests if the given node is part of the graph.
+   *
+   * @param node the node
+   * @return {@code true} if the node is part of the graph
+   */
+  boolean contains(final @NonNull Object node) {
+    return this.ids.containsKey(node);
+  }
+
+  /**
+   * Gets the id of the given node.
+   *
+   * @param node the node
+   * @return the id
+   * @throws IllegalArgumentException if the node is not part of the graph
+   */
+  @NonNegative int id(final @NonNull Object node) {
+    final Integer id = this.ids.get(node);
+    if(id == null) {
+      throw new IllegalArgumentException("Node " + node + " is not an element of this graph");
+    }
+    return id;
+  }
+
+  /**
+   * Computes the number of predecessors of every node.
+   *
+   * @return a fresh array of in-degrees, indexed by id
+   */
+  @NonNull int[] inDegrees() {
+    final int[] inDegrees = new int[this.nodes.length];
+    for(final int target : this.targets) {
+      inDegrees[target]++;
+    }
+    return inDegrees;
+  }
+}
@@ -0,0 +1,494 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.graph.AbstractGraph;
+import com.google.common.graph.ElementOrder;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A read-only directed graph backed by a memory-mapped file.
+ *
+ * <p>The file holds the successors and predecessors of every node in compressed sparse row
+ * form, a table of encoded nodes, and optionally a topological order. Only the header is read
+ * when the file is opened, and nodes are decoded on first access.</p>
+ *
+ * <p>Iterating over the nodes, or over the stored topological order, only decodes the nodes it
+ * reaches. Any lookup by node, such as {@link #successors(Object)}, {@link #predecessors(Object)}
+ * or {@code nodes().contains}, first decodes every node to build an on-heap node to id map, which
+ * is then kept for the life of the graph. Sorting or analyzing the graph also copies its adjacency
+ * tables onto the heap once, and reuses that copy.</p>
+ *
+ * <p>Files are limited to {@link Integer#MAX_VALUE} bytes, and are written in big-endian order.</p>
+ *
+ * @param <T> the node type
+ */
+public final class MappedGraph<T> extends AbstractGraph<T> {
+  private static final int MAGIC = 0x4c47524d; // LGRM
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 5 * Integer.BYTES;
+  private static final int FLAG_SELF_LOOPS = 1;
+  private static final int FLAG_ORDER = 1 << 1;
+
+  private final @NonNull ByteBuffer buffer;
+  private final @NonNull Function<? super ByteBuffer, ? extends T> decoder;
+  private final boolean allowsSelfLoops;
+  private final int size;
+  private final @NonNull IntBuffer offsets;
+  private final @NonNull IntBuffer targets;
+  private final @NonNull IntBuffer predecessorOffsets;
+  private final @NonNull IntBuffer predecessorTargets;
+  private final @Nullable IntBuffer order;
+  private final @NonNull IntBuffer nodeOffsets;
+  private final int nodeData;
+  private final @NonNull AtomicReferenceArray<T> decoded;
+  private volatile @MonotonicNonNull Map<T, Integer> ids;
+  private volatile @MonotonicNonNull IndexedGraph<T> indexed;
+  private final @NonNull Set<T> nodes = new NodeSet();
+
+  private MappedGraph(final @NonNull ByteBuffer buffer, final @NonNull Function<? super ByteBuffer, ? extends T> decoder) throws IOException {
+    if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a graph file");
+    }
+    if(buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException("Unsupported graph file version " + buffer.getInt(Integer.BYTES));
+    }
+    final int flags = buffer.getInt(2 * Integer.BYTES);
+    this.buffer = buffer;
+    this.decoder = decoder;
+    this.allowsSelfLoops = (flags & FLAG_SELF_LOOPS) != 0;
+    this.size = buffer.getInt(3 * Integer.BYTES);
+    final int edges = buffer.getInt(4 * Integer.BYTES);
+    if(this.size < 0 || edges < 0) {
+      throw new IOException("Corrupt graph file header");
+    }
+
+    // positions are tracked as longs, so corrupt sizes cannot wrap around
+    long position = HEADER_SIZE;
+    this.offsets = this.ints(position, this.size + 1L);
+    position += (this.size + 1L) * Integer.BYTES;
+    this.targets = this.ints(position, edges);
+    position += (long) edges * Integer.BYTES;
+    this.predecessorOffsets = this.ints(position, this.size + 1L);
+    position += (this.size + 1L) * Integer.BYTES;
+    this.predecessorTargets = this.ints(position, edges);
+    position += (long) edges * Integer.BYTES;
+    if((flags & FLAG_ORDER) != 0) {
+      this.order = this.ints(position, this.size);
+      position += (long) this.size * Integer.BYTES;
+    } else {
+      this.order = null;
+    }
+    this.nodeOffsets = this.ints(position, this.size + 1L);
+    position += (this.size + 1L) * Integer.BYTES;
+    this.nodeData = (int) position;
+
+    // every offset and id is checked once here, so lookups never leave the tables
+    if(checkOffsets(this.offsets) != edges || checkOffsets(this.predecessorOffsets) != edges) {
+      throw new IOException("Corrupt graph file offsets");
+    }
+    checkIds(this.targets, this.size);
+    checkIds(this.predecessorTargets, this.size);
+    if(this.order != null) {
+      checkIds(this.order, this.size);
+    }
+    if(checkOffsets(this.nodeOffsets) > buffer.capacity() - position) {
+      throw new IOException("Truncated graph file");
+    }
+    this.decoded = new AtomicReferenceArray<>(this.size);
+  }
+
+  private @NonNull IntBuffer ints(final long position, final long length) throws IOException {
+    if(position + length * Integer.BYTES > this.buffer.capacity()) {
+      throw new IOException("Truncated graph file");
+    }
+    final ByteBuffer slice = this.buffer.duplicate();
+    slice.position((int) position).limit((int) (position + length * Integer.BYTES));
+    return slice.slice().asIntBuffer();
+  }
+
+  /**
+   * Checks that a table of offsets starts at zero and never decreases.
+   *
+   * @param offsets the offsets
+   * @return the last offset
+   * @throws IOException if the offsets are corrupt
+   */
+  private static int checkOffsets(final @NonNull IntBuffer offsets) throws IOException {
+    int previous = 0;
+    for(int i = 0, length = offsets.limit(); i < length; i++) {
+      final int offset = offsets.get(i);
+      if(offset < previous || (i == 0 && offset != 0)) {
+        throw new IOException("Corrupt graph file offsets");
+      }
+      previous = offset;
+    }
+    return previous;
+  }
+
+  /**
+   * Checks that every id of a table is the id of a node.
+   *
+   * @param ids the ids
+   * @param size the number of nodes
+   * @throws IOException if an id is out of range
+   */
+  private static void checkIds(final @NonNull IntBuffer ids, final int size) throws IOException {
+    for(int i = 0, length = ids.limit(); i < length; i++) {
+      final int id = ids.get(i);
+      if(id < 0 || id >= size) {
+        throw new IOException("Corrupt graph file: node id " + id + " is out of range");
+      }
+    }
+  }
+
+  /**
+   * Writes a directed graph to a file.
+   *
+   * @param graph the graph
+   * @param path the file to write to
+   * @param encoder the node encoder
+   * @param includeOrder whether to store a topological order of the graph
+   * @param <T> the node type
+   * @throws CyclePresentException if {@code includeOrder} is {@code true} and the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed, or is too large to be written
+   * @throws IOException if an I/O error occurs
+   */
+  public static <T> void write(final @NonNull Graph<T> graph, final @NonNull Path path, final @NonNull Function<? super T, byte[]> encoder, final boolean includeOrder) throws IOException {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    final IndexedGraph<T> transposed = indexed.transpose();
+    final int size = indexed.size();
+    @Nullable int[] order = null;
+    if(includeOrder) {
+      order = MoreGraphs.sort(indexed);
+      if(order.length != size) {
+        throw MoreGraphs.cyclePresent(indexed);
+      }
+    }
+
+    final byte[][] nodes = new byte[size][];
+    long length = HEADER_SIZE + (3L * (size + 1) + 2L * indexed.targets.length + (order != null ? size : 0)) * Integer.BYTES;
+    for(int id = 0; id < size; id++) {
+      nodes[id] = encoder.apply(indexed.node(id));
+      length += nodes[id].length;
+    }
+    checkArgument(length <= Integer.MAX_VALUE, "the graph is too large to be written (%s bytes)", length);
+
+    try(final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt((graph.allowsSelfLoops() ? FLAG_SELF_LOOPS : 0) | (order != null ? FLAG_ORDER : 0));
+      output.writeInt(size);
+      output.writeInt(indexed.targets.length);
+      writeInts(output, indexed.offsets);
+      writeInts(output, indexed.targets);
+      writeInts(output, transposed.offsets);
+      writeInts(output, transposed.targets);
+      if(order != null) {
+        writeInts(output, order);
+      }
+      int offset = 0;
+      output.writeInt(offset);
+      for(final byte[] node : nodes) {
+        offset += node.length;
+        output.writeInt(offset);
+      }
+      for(final byte[] node : nodes) {
+        output.write(node);
+      }
+    }
+  }
+
+  private static void writeInts(final @NonNull DataOutputStream output, final @NonNull int[] values) throws IOException {
+    for(final int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  /**
+   * Maps a graph file written by {@link #write(Graph, Path, Function, boolean)}.
+   *
+   * <p>The decoder is given a read-only buffer holding exactly the bytes of one node. It may be
+   * called from several threads, and more than once for the same node.</p>
+   *
+   * @param path the file to map
+   * @param decoder the node decoder
+   * @param <T> the node type
+   * @return the mapped graph
+   * @throws IOException if an I/O error occurs, or the file is not a graph file
+   */
+  public static <T> @NonNull MappedGraph<T> open(final @NonNull Path path, final @NonNull Function<? super ByteBuffer, ? extends T> decoder) throws IOException {
+    final MappedByteBuffer buffer;
+    try(final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long length = channel.size();
+      if(length > Integer.MAX_VALUE) {
+        throw new IOException("Graph file is too large (" + length + " bytes)");
+      }
+      // the mapping stays valid after the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+    return new MappedGraph<>(buffer, decoder);
+  }
+
+  /**
+   * Gets the topological order stored in the file.
+   *
+   * @return the topological order, or {@link Optional#empty()} if none was stored
+   */
+  public @NonNull Optional<List<T>> topologicalOrder() {
+    final IntBuffer order = this.order;
+    if(order == null) {
+      return Optional.empty();
+    }
+    return Optional.of(new AbstractList<T>() {
+      @Override
+      public T get(final int index) {
+        return MappedGraph.this.node(order.get(index));
+      }
+
+      @Override
+      public int size() {
+        return MappedGraph.this.size;
+      }
+    });
+  }
+
+  /**
+   * Gets the indexed form of this graph, whose successor and predecessor tables are copied out of
+   * the file once, on first use.
+   *
+   * @return the indexed graph
+   */
+  @NonNull IndexedGraph<T> indexed() {
+    // racing threads build equal indexed graphs
+    IndexedGraph<T> indexed = this.indexed;
+    if(indexed == null) {
+      final Object[] nodes = new Object[this.size];
+      for(int id = 0; id < this.size; id++) {
+        nodes[id] = this.node(id);
+      }
+      indexed = IndexedGraph.of(nodes, this.ids(), copy(this.offsets), copy(this.targets), copy(this.predecessorOffsets), copy(this.predecessorTargets));
+      this.indexed = indexed;
+    }
+    return indexed;
+  }
+
+  private static @NonNull int[] copy(final @NonNull IntBuffer buffer) {
+    final int[] values = new int[buffer.capacity()];
+    buffer.duplicate().get(values);
+    return values;
+  }
+
+  private @NonNull T node(final int id) {
+    T node = this.decoded.get(id);
+    if(node == null) {
+      final ByteBuffer bytes = this.buffer.duplicate();
+      bytes.position(this.nodeData + this.nodeOffsets.get(id)).limit(this.nodeData + this.nodeOffsets.get(id + 1));
+      node = this.decoder.apply(bytes.slice().asReadOnlyBuffer());
+      if(!this.decoded.compareAndSet(id, null, node)) {
+        node = this.decoded.get(id);
+      }
+    }
+    return node;
+  }
+
+  private @NonNull Map<T, Integer> ids() {
+    // racing threads build equal maps
+    Map<T, Integer> ids = this.ids;
+    if(ids == null) {
+      ids = Maps.newHashMapWithExpectedSize(this.size);
+      for(int id = 0; id < this.size; id++) {
+        ids.put(this.node(id), id);
+      }
+      this.ids = ids;
+    }
+    return ids;
+  }
+
+  private int id(final @NonNull Object node) {
+    final Integer id = this.ids().get(node);
+    if(id == null) {
+      throw new IllegalArgumentException("Node " + node + " is not an element of this graph");
+    }
+    return id;
+  }
+
+  @Override
+  public @NonNull Set<T> nodes() {
+    return this.nodes;
+  }
+
+  @Override
+  protected long edgeCount() {
+    return this.targets.capacity();
+  }
+
+  @Override
+  public boolean isDirected() {
+    return true;
+  }
+
+  @Override
+  public boolean allowsSelfLoops() {
+    return this.allowsSelfLoops;
+  }
+
+  @Override
+  public @NonNull ElementOrder<T> nodeOrder() {
+    return ElementOrder.insertion();
+  }
+
+  @Override
+  public @NonNull Set<T> adjacentNodes(final @NonNull Object node) {
+    return Sets.union(this.predecessors(node), this.successors(node));
+  }
+
+  @Override
+  public @NonNull Set<T> predecessors(final @NonNull Object node) {
+    return new AdjacentSet(this.predecessorOffsets, this.predecessorTargets, this.id(node));
+  }
+
+  @Override
+  public @NonNull Set<T> successors(final @NonNull Object node) {
+    return new AdjacentSet(this.offsets, this.targets, this.id(node));
+  }
+
+  private final class NodeSet extends AbstractSet<T> {
+    @Override
+    public @NonNull Iterator<T> iterator() {
+      return new IdIterator(null, 0, MappedGraph.this.size);
+    }
+
+    @Override
+    public int size() {
+      return MappedGraph.this.size;
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object object) {
+      return object != null && MappedGraph.this.ids().containsKey(object);
+    }
+  }
+
+  /**
+   * A view of a row of a mapped compressed sparse row table.
+   */
+  private final class AdjacentSet extends AbstractSet<T> {
+    private final @NonNull IntBuffer targets;
+    private final int start;
+    private final int end;
+
+    AdjacentSet(final @NonNull IntBuffer offsets, final @NonNull IntBuffer targets, final int id) {
+      this.targets = targets;
+      this.start = offsets.get(id);
+      this.end = offsets.get(id + 1);
+    }
+
+    @Override
+    public @NonNull Iterator<T> iterator() {
+      return new IdIterator(this.targets, this.start, this.end);
+    }
+
+    @Override
+    public int size() {
+      return this.end - this.start;
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object object) {
+      if(object == null) {
+        return false;
+      }
+      final Integer id = MappedGraph.this.ids().get(object);
+      if(id == null) {
+        return false;
+      }
+      for(int i = this.start; i < this.end; i++) {
+        if(this.targets.get(i) == id) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * An iterator over a range of ids, or over a range of a mapped table of ids.
+   */
+  private final class IdIterator implements Iterator<T> {
+    private final @Nullable IntBuffer ids;
+    private final int end;
+    private int cursor;
+
+    IdIterator(final @Nullable IntBuffer ids, final int start, final int end) {
+      this.ids = ids;
+      this.cursor = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.cursor < this.end;
+    }
+
+    @Override
+    public T next() {
+      if(this.cursor >= this.end) {
+        throw new NoSuchElementException();
+      }
+      final int index = this.cursor++;
+      return MappedGraph.this.node(this.ids == null ? index : this.ids.get(index));
+    }
+  }
+}
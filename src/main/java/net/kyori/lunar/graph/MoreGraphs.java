@@ -23,15 +23,30 @@
  */
 package net.kyori.lunar.graph;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
 import com.google.common.graph.Graph;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -42,6 +57,23 @@ public final class MoreGraphs {
   private MoreGraphs() {
   }
 
+  /**
+   * Creates a compact, read-only copy of a directed graph.
+   *
+   * <p>The copy stores its nodes in an array and the successors and predecessors of each node
+   * in primitive arrays, with a single map from nodes to their index. The algorithms of this
+   * class operate on the copy without indexing it again.</p>
+   *
+   * @param graph the graph
+   * @param <T> the node type
+   * @return the compact graph
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull Graph<T> compact(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    return CompactGraph.of(graph);
+  }
+
   /**
    * Sorts a directed acyclic graph into a list.
    *
@@ -88,9 +120,560 @@ public final class MoreGraphs {
     return topologicalSort(graph, SortType.comparable());
   }
 
+  /**
+   * Sorts the part of a directed acyclic graph reachable from some roots into a list.
+   *
+   * <p>Only the roots and the nodes reachable from them are visited. The particular order
+   * of elements without prerequisites is not guaranteed.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param roots the nodes to start from
+   * @param <T> the node type
+   * @return the sorted list
+   * @throws CyclePresentException if the reachable part of the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops, or a root is not an element of the graph
+   */
+  public static <T> @NonNull List<T> topologicalSort(final @NonNull Graph<T> graph, final @NonNull Set<T> roots) {
+    return inducedTopologicalSort(graph, reachable(graph, roots, graph::successors));
+  }
+
+  /**
+   * Sorts the part of a directed acyclic graph some targets depend on into a list.
+   *
+   * <p>Only the targets and the nodes they can be reached from are visited, which are exactly
+   * the nodes needed to satisfy the prerequisites of the targets. The particular order of
+   * elements without prerequisites is not guaranteed.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param targets the nodes whose prerequisites to sort
+   * @param <T> the node type
+   * @return the sorted list
+   * @throws CyclePresentException if the visited part of the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops, or a target is not an element of the graph
+   */
+  public static <T> @NonNull List<T> prerequisiteTopologicalSort(final @NonNull Graph<T> graph, final @NonNull Set<T> targets) {
+    return inducedTopologicalSort(graph, reachable(graph, targets, graph::predecessors));
+  }
+
+  /**
+   * Sorts the subgraph induced by some nodes of a directed acyclic graph.
+   *
+   * @param graph the graph to be sorted
+   * @param nodes the nodes of the subgraph
+   * @param <T> the node type
+   * @return the sorted list
+   * @throws CyclePresentException if the subgraph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  private static <T> @NonNull List<T> inducedTopologicalSort(final @NonNull Graph<T> graph, final @NonNull Collection<T> nodes) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph, nodes);
+    final int[] order = sort(indexed);
+    if(order.length != indexed.size()) {
+      throw cyclePresent(indexed);
+    }
+
+    final List<T> results = new ArrayList<>(order.length);
+    for(final int id : order) {
+      results.add(indexed.node(id));
+    }
+    return results;
+  }
+
+  /**
+   * Collects the nodes reachable from some roots, following the given adjacency.
+   *
+   * @param graph the graph
+   * @param roots the nodes to start from
+   * @param adjacency the function providing the nodes adjacent to a node
+   * @param <T> the node type
+   * @return the reachable nodes, including the roots
+   */
+  private static <T> @NonNull Set<T> reachable(final @NonNull Graph<T> graph, final @NonNull Set<T> roots, final @NonNull Function<T, Set<T>> adjacency) {
+    final Set<T> reached = new LinkedHashSet<>();
+    final Queue<T> processing = new ArrayDeque<>();
+    for(final T root : roots) {
+      checkArgument(graph.nodes().contains(root), "Node %s is not an element of this graph", root);
+      if(reached.add(root)) {
+        processing.add(root);
+      }
+    }
+    while(!processing.isEmpty()) {
+      for(final T node : adjacency.apply(processing.poll())) {
+        if(reached.add(node)) {
+          processing.add(node);
+        }
+      }
+    }
+    return reached;
+  }
+
+  /**
+   * Sorts a directed acyclic graph into a list of layers.
+   *
+   * <p>Every node in a layer only has prerequisites in earlier layers, so the nodes of a
+   * single layer are independent of each other. The particular order of elements within
+   * a layer is not guaranteed.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type
+   * @return the sorted layers
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public static <T> @NonNull List<List<T>> topologicalLayers(final @NonNull Graph<T> graph) {
+    return topologicalLayers(graph, null);
+  }
+
+  /**
+   * Sorts a directed acyclic graph into a list of layers.
+   *
+   * <p>Every node in a layer only has prerequisites in earlier layers, so the nodes of a
+   * single layer are independent of each other. The order of elements within a layer is
+   * determined by the comparator.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param comparator the comparator
+   * @param <T> the node type
+   * @return the sorted layers
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public static <T> @NonNull List<List<T>> orderedTopologicalLayers(final @NonNull Graph<T> graph, final @NonNull Comparator<T> comparator) {
+    return topologicalLayers(graph, comparator);
+  }
+
+  /**
+   * Sorts a directed acyclic graph into a list of layers.
+   *
+   * <p>Every node in a layer only has prerequisites in earlier layers, so the nodes of a
+   * single layer are independent of each other. The order of elements within a layer is
+   * determined by the natural order.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type, implementing {@link Comparable}
+   * @return the sorted layers
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public static <T extends Comparable<? super T>> @NonNull List<List<T>> orderedTopologicalLayers(final @NonNull Graph<T> graph) {
+    return topologicalLayers(graph, Comparator.naturalOrder());
+  }
+
+  /**
+   * Actual content of the layered topological sort.
+   *
+   * @param graph the graph to be sorted
+   * @param comparator the comparator for elements within a layer, or {@code null}
+   * @param <T> the node type
+   * @return the sorted layers
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  private static <T> @NonNull List<List<T>> topologicalLayers(final @NonNull Graph<T> graph, final @Nullable Comparator<? super T> comparator) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    final int size = indexed.size();
+    final int[] inDegrees = indexed.inDegrees();
+    final int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+
+    for(int id = 0; id < size; id++) {
+      if(inDegrees[id] == 0) {
+        queue[tail++] = id;
+      }
+    }
+
+    final List<List<T>> results = new ArrayList<>();
+    while(head < tail) {
+      // everything queued so far forms the current layer
+      final int end = tail;
+      final List<T> layer = new ArrayList<>(end - head);
+      while(head < end) {
+        final int now = queue[head++];
+        for(int edge = indexed.offsets[now], last = indexed.offsets[now + 1]; edge < last; edge++) {
+          final int successor = indexed.targets[edge];
+          if(--inDegrees[successor] == 0) {
+            queue[tail++] = successor;
+          }
+        }
+        layer.add(indexed.node(now));
+      }
+      if(comparator != null) {
+        layer.sort(comparator);
+      }
+      results.add(layer);
+    }
+
+    if(tail != size) {
+      throw cyclePresent(indexed);
+    }
+    return results;
+  }
+
+  /**
+   * Lazily sorts a directed acyclic graph.
+   *
+   * <p>Nodes are emitted as soon as all of their prerequisites have been emitted, and no work
+   * is done beyond what is needed to produce the elements pulled from the iterator. The
+   * particular order of elements without prerequisites is not guaranteed.</p>
+   *
+   * <p>The graph must not be modified while iterating.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type
+   * @return an iterator over the sorted nodes, which throws {@link CyclePresentException}
+   *     once the only remaining nodes are blocked by cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public static <T> @NonNull Iterator<T> topologicalIterator(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
+    return new TopologicalIterator<>(graph);
+  }
+
+  /**
+   * Lazily sorts a directed acyclic graph.
+   *
+   * <p>Nodes are emitted as soon as all of their prerequisites have been emitted, and no work
+   * is done beyond what is needed to produce the elements consumed from the stream. The
+   * particular order of elements without prerequisites is not guaranteed.</p>
+   *
+   * <p>The graph must not be modified while the stream is consumed.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type
+   * @return a stream of the sorted nodes, which throws {@link CyclePresentException}
+   *     once the only remaining nodes are blocked by cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   * @see #topologicalIterator(Graph)
+   */
+  public static <T> @NonNull Stream<T> topologicalStream(final @NonNull Graph<T> graph) {
+    return Streams.stream(topologicalIterator(graph));
+  }
+
+  /**
+   * Tests if a directed graph has a cycle.
+   *
+   * <p>The search stops at the first cycle found.</p>
+   *
+   * @param graph the graph
+   * @return {@code true} if the graph has a cycle
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static boolean hasCycle(final @NonNull Graph<?> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    return nodeOnCycle(IndexedGraph.of(graph)) != -1;
+  }
+
+  /**
+   * Finds a cycle in a directed graph.
+   *
+   * <p>The cycle returned is a shortest cycle through the first node found to be on a cycle,
+   * which is not necessarily the shortest cycle in the graph. Each node in the list has an edge
+   * to the next one, and the last node has an edge to the first one.</p>
+   *
+   * @param graph the graph
+   * @param <T> the node type
+   * @return the nodes of the cycle, or {@link Optional#empty()} if the graph has no cycles
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull Optional<List<T>> findCycle(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    final int start = nodeOnCycle(indexed);
+    if(start == -1) {
+      return Optional.empty();
+    }
+
+    // a breadth-first search from the node finds the shortest way back to it
+    final int[] parents = new int[indexed.size()];
+    Arrays.fill(parents, -1);
+    final int[] queue = new int[indexed.size()];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = start;
+    parents[start] = start;
+    int last = -1;
+    while(last == -1) {
+      final int now = queue[head++];
+      for(int edge = indexed.offsets[now], end = indexed.offsets[now + 1]; edge < end; edge++) {
+        final int successor = indexed.targets[edge];
+        if(successor == start) {
+          last = now;
+          break;
+        }
+        if(parents[successor] == -1) {
+          parents[successor] = now;
+          queue[tail++] = successor;
+        }
+      }
+    }
+
+    final List<T> cycle = new ArrayList<>();
+    for(int node = last; node != start; node = parents[node]) {
+      cycle.add(indexed.node(node));
+    }
+    cycle.add(indexed.node(start));
+    Collections.reverse(cycle);
+    return Optional.of(cycle);
+  }
+
+  /**
+   * Finds a node on a cycle with an iterative three-color depth-first search.
+   *
+   * @param graph the indexed graph
+   * @return the id of a node on a cycle, or {@code -1} if the graph has no cycles
+   */
+  private static int nodeOnCycle(final @NonNull IndexedGraph<?> graph) {
+    final byte unvisited = 0;
+    final byte visiting = 1;
+    final byte visited = 2;
+    final int size = graph.size();
+    final byte[] colors = new byte[size];
+    final int[] cursor = new int[size];
+    final int[] frames = new int[size];
+
+    for(int root = 0; root < size; root++) {
+      if(colors[root] != unvisited) {
+        continue;
+      }
+      colors[root] = visiting;
+      cursor[root] = graph.offsets[root];
+      frames[0] = root;
+      int depth = 1;
+      while(depth > 0) {
+        final int now = frames[depth - 1];
+        if(cursor[now] < graph.offsets[now + 1]) {
+          final int node = graph.targets[cursor[now]++];
+          if(colors[node] == visiting) {
+            return node;
+          } else if(colors[node] == unvisited) {
+            colors[node] = visiting;
+            cursor[node] = graph.offsets[node];
+            frames[depth++] = node;
+          }
+        } else {
+          colors[now] = visited;
+          depth--;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sorts the strongly connected components of a directed graph into a list.
+   *
+   * <p>Every cycle in the graph is collapsed into a single set, so this never fails because
+   * of cycles. A node without cycles is a set of its own. The particular order of components
+   * without prerequisites is not guaranteed.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type
+   * @return the sorted list of components
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull List<Set<T>> condensedTopologicalSort(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+
+    final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(IndexedGraph.of(graph));
+    analyzer.analyze();
+    final List<Collection<T>> components = analyzer.components();
+    final List<Set<T>> results = new ArrayList<>(components.size());
+    // components are discovered in reverse topological order
+    for(int i = components.size() - 1; i >= 0; i--) {
+      results.add(Collections.unmodifiableSet(new LinkedHashSet<>(components.get(i))));
+    }
+    return results;
+  }
+
+  /**
+   * Computes the transitive reduction of a directed acyclic graph.
+   *
+   * <p>The reduction has the same nodes and reachability as the graph, with the fewest edges:
+   * an edge is dropped when its target can also be reached through another successor of its
+   * source. Reachability is tracked with one bit set per node, covering the nodes after it in
+   * topological order, which is only kept until all predecessors of the node are processed.</p>
+   *
+   * <p>The bit set of a node only spans up to the last successor of any of its ancestors, as no
+   * later bit is ever tested, so the work per node is bounded by the reach of the edges above it
+   * rather than by the size of the graph.</p>
+   *
+   * @param graph the graph to be reduced
+   * @param <T> the node type
+   * @return the reduced graph, which cannot be modified
+   * @throws CyclePresentException if the graph has cycles
+   * @throws IllegalArgumentException if the graph is not directed or allows self loops
+   */
+  public static <T> @NonNull Graph<T> transitiveReduction(final @NonNull Graph<T> graph) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    final int size = indexed.size();
+    final int[] order = sort(indexed);
+    if(order.length != size) {
+      throw cyclePresent(indexed);
+    }
+    final int[] positions = new int[size];
+    for(int position = 0; position < size; position++) {
+      positions[order[position]] = position;
+    }
+
+    // the last position any ancestor of a position, or the position itself, has a successor at
+    final int[] limits = new int[size];
+    int degree = 0;
+    for(int position = 0; position < size; position++) {
+      final int id = order[position];
+      int limit = Math.max(limits[position], position);
+      for(int edge = indexed.offsets[id], end = indexed.offsets[id + 1]; edge < end; edge++) {
+        limit = Math.max(limit, positions[indexed.targets[edge]]);
+      }
+      limits[position] = limit;
+      for(int edge = indexed.offsets[id], end = indexed.offsets[id + 1]; edge < end; edge++) {
+        final int successor = positions[indexed.targets[edge]];
+        limits[successor] = Math.max(limits[successor], limit);
+      }
+      degree = Math.max(degree, indexed.offsets[id + 1] - indexed.offsets[id]);
+    }
+
+    // kept edges are written over the slots of the edges of their source, then compacted
+    final int[] kept = new int[indexed.targets.length];
+    final int[] keptCounts = new int[size];
+    final int[] successors = new int[degree];
+
+    // the row of a position spans from the word holding its own bit to the word holding its
+    // limit, and is released once all of its predecessors have been processed
+    final long[][] reachable = new long[size][];
+    final int[] remaining = indexed.inDegrees();
+    for(int position = size - 1; position >= 0; position--) {
+      final int id = order[position];
+      final int base = position / Long.SIZE;
+
+      final int start = indexed.offsets[id];
+      final int count = indexed.offsets[id + 1] - start;
+      for(int i = 0; i < count; i++) {
+        successors[i] = positions[indexed.targets[start + i]];
+      }
+      // a successor reachable through another successor comes later in topological order
+      Arrays.sort(successors, 0, count);
+
+      final long[] row = new long[limits[position] / Long.SIZE - base + 1];
+      row[0] |= 1L << position;
+      for(int i = 0; i < count; i++) {
+        final int successor = successors[i];
+        if((row[successor / Long.SIZE - base] & (1L << successor)) == 0) {
+          kept[start + keptCounts[id]++] = order[successor];
+          final long[] other = reachable[successor];
+          final int offset = successor / Long.SIZE - base;
+          // the limit of a successor is at least the limit of this position
+          for(int word = 0, words = row.length - offset; word < words; word++) {
+            row[offset + word] |= other[word];
+          }
+        }
+      }
+      for(int i = 0; i < count; i++) {
+        final int successor = successors[i];
+        if(--remaining[order[successor]] == 0) {
+          reachable[successor] = null;
+        }
+      }
+      if(remaining[id] > 0) {
+        reachable[position] = row;
+      }
+    }
+
+    final int[] offsets = new int[size + 1];
+    for(int id = 0; id < size; id++) {
+      offsets[id + 1] = offsets[id] + keptCounts[id];
+    }
+    final int[] targets = new int[offsets[size]];
+    for(int id = 0; id < size; id++) {
+      System.arraycopy(kept, indexed.offsets[id], targets, offsets[id], keptCounts[id]);
+    }
+    return CompactGraph.of(indexed.withEdges(offsets, targets), false, graph.nodeOrder());
+  }
+
+  /**
+   * Finds the strongly connected components of a directed graph.
+   *
+   * <p>Large graphs are analyzed in parallel on the {@link ForkJoinPool#commonPool() common pool}.
+   * The order of the components is not guaranteed.</p>
+   *
+   * @param graph the graph to be analyzed
+   * @param <T> the node type
+   * @return an unmodifiable view of the strongly connected components
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull Collection<Collection<T>> stronglyConnectedComponents(final @NonNull Graph<T> graph) {
+    return stronglyConnectedComponents(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Finds the strongly connected components of a directed graph.
+   *
+   * <p>Large graphs are analyzed in parallel in the given pool. The order of the components is
+   * not guaranteed.</p>
+   *
+   * @param graph the graph to be analyzed
+   * @param pool the pool to analyze in
+   * @param <T> the node type
+   * @return an unmodifiable view of the strongly connected components
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull Collection<Collection<T>> stronglyConnectedComponents(final @NonNull Graph<T> graph, final @NonNull ForkJoinPool pool) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+
+    final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(IndexedGraph.of(graph));
+    analyzer.analyze(pool);
+    return Collections.unmodifiableList(Lists.transform(analyzer.components(), Collections::unmodifiableCollection));
+  }
+
+  /**
+   * Sorts a directed graph, split into its weakly connected components.
+   *
+   * <p>Components are sorted in parallel on the {@link ForkJoinPool#commonPool() common pool},
+   * and cycles are reported for each component separately.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param <T> the node type
+   * @return the partitioned sort
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull PartitionedTopologicalSort<T> partitionedTopologicalSort(final @NonNull Graph<T> graph) {
+    return partitionedTopologicalSort(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sorts a directed graph, split into its weakly connected components.
+   *
+   * <p>Components are sorted in parallel in the given pool, and cycles are reported for each
+   * component separately.</p>
+   *
+   * @param graph the graph to be sorted
+   * @param pool the pool to sort in
+   * @param <T> the node type
+   * @return the partitioned sort
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull PartitionedTopologicalSort<T> partitionedTopologicalSort(final @NonNull Graph<T> graph, final @NonNull ForkJoinPool pool) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    return PartitionedTopologicalSort.of(graph, pool);
+  }
+
   /**
    * Actual content of the topological sort. This is a breadth-first search based approach.
    *
+   * <p>Nodes are assigned dense integer ids up front, so the in-degree bookkeeping is done on
+   * primitive arrays instead of boxed map entries.</p>
+   *
    * @param graph the graph to be sorted
    * @param type the sort type
    * @param <T> the node type
@@ -102,42 +685,194 @@ public final class MoreGraphs {
     checkArgument(graph.isDirected(), "the graph must be directed");
     checkArgument(!graph.allowsSelfLoops(), "the graph cannot allow self loops");
 
-    final Map<T, Integer> requiredCounts = new HashMap<>();
+    if(type == SortType.RANDOM && graph instanceof MappedGraph) {
+      final Optional<List<T>> stored = ((MappedGraph<T>) graph).topologicalOrder();
+      if(stored.isPresent()) {
+        return new ArrayList<>(stored.get());
+      }
+    }
+
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+    final Comparator<? super T> comparator = type.comparator();
+    final int[] order;
+    if(type == SortType.RANDOM) {
+      order = sort(indexed);
+    } else if(comparator != null) {
+      order = sort(indexed, RankedQueue.of(indexed, comparator));
+    } else {
+      order = sort(indexed, type.createQueue());
+    }
+    final int size = indexed.size();
 
-    for(final T node : graph.nodes()) {
-      for(final T successor : graph.successors(node)) {
-        requiredCounts.merge(successor, 1, (a, b) -> a + b);
+    if(order.length != size) {
+      throw cyclePresent(indexed);
+    }
+
+    final List<T> results = new ArrayList<>(size);
+    for(final int id : order) {
+      results.add(indexed.node(id));
+    }
+    return results;
+  }
+
+  /**
+   * Runs Kahn's algorithm, collecting nodes without prerequisites in insertion order.
+   *
+   * @param graph the indexed graph
+   * @return the ids of the sorted nodes, shorter than the graph size if the graph has cycles
+   */
+  static @NonNull int[] sort(final @NonNull IndexedGraph<?> graph) {
+    final int size = graph.size();
+    final int[] inDegrees = graph.inDegrees();
+    // the queue never holds a node twice, so it doubles as the result
+    final int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+
+    for(int id = 0; id < size; id++) {
+      if(inDegrees[id] == 0) {
+        queue[tail++] = id;
       }
     }
 
-    final Queue<T> processing = type.createQueue();
-    final List<T> results = new ArrayList<>();
+    while(head < tail) {
+      final int now = queue[head++];
+      for(int edge = graph.offsets[now], end = graph.offsets[now + 1]; edge < end; edge++) {
+        final int successor = graph.targets[edge];
+        if(--inDegrees[successor] == 0) {
+          queue[tail++] = successor;
+        }
+      }
+    }
+    return tail == size ? queue : Arrays.copyOf(queue, tail);
+  }
+
+  /**
+   * Runs Kahn's algorithm, collecting nodes without prerequisites by rank.
+   *
+   * @param graph the indexed graph
+   * @param processing the ranked queue
+   * @return the ids of the sorted nodes, shorter than the graph size if the graph has cycles
+   */
+  static @NonNull int[] sort(final @NonNull IndexedGraph<?> graph, final @NonNull RankedQueue processing) {
+    final int size = graph.size();
+    final int[] inDegrees = graph.inDegrees();
+    final int[] results = new int[size];
+    int count = 0;
 
-    for(final T node : graph.nodes()) {
-      if(!requiredCounts.containsKey(node)) {
-        processing.add(node);
+    for(int id = 0; id < size; id++) {
+      if(inDegrees[id] == 0) {
+        processing.add(id);
       }
     }
 
     while(!processing.isEmpty()) {
-      final T now = processing.poll();
-      for(final T successor : graph.successors(now)) {
-        final int newCount = requiredCounts.get(successor) - 1;
-        if(newCount == 0) {
+      final int now = processing.poll();
+      for(int edge = graph.offsets[now], end = graph.offsets[now + 1]; edge < end; edge++) {
+        final int successor = graph.targets[edge];
+        if(--inDegrees[successor] == 0) {
           processing.add(successor);
-          requiredCounts.remove(successor);
-        } else {
-          requiredCounts.put(successor, newCount);
         }
       }
-      results.add(now);
+      results[count++] = now;
     }
+    return count == size ? results : Arrays.copyOf(results, count);
+  }
 
-    if(!requiredCounts.isEmpty()) {
-      final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(graph);
-      analyzer.analyze();
-      throw new CyclePresentException("Graph (" + graph + ") has cycle(s): " + analyzer.renderCycles(), analyzer.components());
+  /**
+   * Runs Kahn's algorithm, collecting nodes without prerequisites through the given queue.
+   *
+   * @param graph the indexed graph
+   * @param processing the queue
+   * @param <T> the node type
+   * @return the ids of the sorted nodes, shorter than the graph size if the graph has cycles
+   */
+  private static <T> @NonNull int[] sort(final @NonNull IndexedGraph<T> graph, final @NonNull Queue<T> processing) {
+    final int size = graph.size();
+    final int[] inDegrees = graph.inDegrees();
+    final int[] results = new int[size];
+    int count = 0;
+
+    for(int id = 0; id < size; id++) {
+      if(inDegrees[id] == 0) {
+        processing.add(graph.node(id));
+      }
+    }
+
+    while(!processing.isEmpty()) {
+      final int now = graph.id(processing.poll());
+      for(int edge = graph.offsets[now], end = graph.offsets[now + 1]; edge < end; edge++) {
+        final int successor = graph.targets[edge];
+        if(--inDegrees[successor] == 0) {
+          processing.add(graph.node(successor));
+        }
+      }
+      results[count++] = now;
+    }
+    return count == size ? results : Arrays.copyOf(results, count);
+  }
+
+  /**
+   * Creates the exception describing the cycles of a graph which failed to be sorted.
+   *
+   * @param indexed the indexed snapshot of the graph
+   * @param <T> the node type
+   * @return the exception
+   */
+  static <T> @NonNull CyclePresentException cyclePresent(final @NonNull IndexedGraph<T> indexed) {
+    final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(indexed);
+    analyzer.analyze();
+    return new CyclePresentException("Graph has cycle(s)", analyzer.components());
+  }
+
+  /**
+   * A topological sort which emits nodes on demand.
+   *
+   * <p>Nodes without predecessors are found by scanning the graph only when nothing else is
+   * ready, and the remaining counts of other nodes are only tracked once they are reached.</p>
+   *
+   * @param <T> the node type
+   */
+  private static final class TopologicalIterator<T> extends AbstractIterator<T> {
+    private final @NonNull Graph<T> graph;
+    private final @NonNull Iterator<T> nodes;
+    private final @NonNull Map<T, Integer> requiredCounts = new HashMap<>();
+    private final @NonNull Queue<T> processing = new ArrayDeque<>();
+    private int emitted;
+
+    TopologicalIterator(final @NonNull Graph<T> graph) {
+      this.graph = graph;
+      this.nodes = graph.nodes().iterator();
+    }
+
+    @Override
+    protected T computeNext() {
+      while(this.processing.isEmpty() && this.nodes.hasNext()) {
+        final T node = this.nodes.next();
+        if(this.graph.inDegree(node) == 0) {
+          this.processing.add(node);
+        }
+      }
+
+      final T now = this.processing.poll();
+      if(now == null) {
+        if(this.emitted != this.graph.nodes().size()) {
+          throw cyclePresent(IndexedGraph.of(this.graph));
+        }
+        return this.endOfData();
+      }
+
+      for(final T successor : this.graph.successors(now)) {
+        final int newCount = this.requiredCounts.getOrDefault(successor, this.graph.inDegree(successor)) - 1;
+        if(newCount == 0) {
+          this.processing.add(successor);
+          this.requiredCounts.remove(successor);
+        } else {
+          this.requiredCounts.put(successor, newCount);
+        }
+      }
+      this.emitted++;
+      return now;
     }
-    return results;
   }
 }
@@ -0,0 +1,302 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A parallel search for the strongly connected components of an indexed graph.
+ *
+ * <p>Nodes without predecessors or successors are first trimmed away as components of their own.
+ * The remaining nodes are split with the forward-backward algorithm: the nodes both reachable from
+ * and reaching a pivot form its component, and the nodes only reachable from it, only reaching it,
+ * or neither, are searched independently as they cannot share components. Parts below a threshold
+ * are searched with Tarjan's algorithm instead.</p>
+ *
+ * <p>Each part is identified by a color unique to it. A search only ever moves nodes of its own
+ * color, so concurrent searches never write to the same node, and a node of a foreign color is
+ * never mistaken for one of its own.</p>
+ */
+final class ParallelComponentSearch {
+  private static final int DONE = -1;
+  private static final int UNVISITED = -1;
+  private final @NonNull IndexedGraph<?> forward;
+  private final @NonNull IndexedGraph<?> backward;
+  private final int threshold;
+  private final @NonNull int[] colors;
+  private final @NonNull AtomicInteger lastColor = new AtomicInteger();
+  // Tarjan's state, where each search only touches the nodes of its own color
+  private final @NonNull int[] index;
+  private final @NonNull int[] low;
+  private final @NonNull int[] cursor;
+  private final @NonNull Queue<int[]> components = new ConcurrentLinkedQueue<>();
+
+  ParallelComponentSearch(final @NonNull IndexedGraph<?> graph, final int threshold) {
+    this.forward = graph;
+    this.backward = graph.transpose();
+    this.threshold = threshold;
+    final int size = graph.size();
+    this.colors = new int[size];
+    this.index = new int[size];
+    this.low = new int[size];
+    this.cursor = new int[size];
+    Arrays.fill(this.index, UNVISITED);
+  }
+
+  /**
+   * Searches for the strongly connected components.
+   *
+   * @param pool the pool to search in
+   * @return the components, as arrays of node ids
+   */
+  @NonNull Collection<int[]> search(final @NonNull ForkJoinPool pool) {
+    final int[] remaining = this.trim();
+    if(remaining.length > 0) {
+      pool.invoke(new Search(remaining, this.lastColor.get()));
+    }
+    return this.components;
+  }
+
+  /**
+   * Repeatedly removes nodes without predecessors or successors, which are components of their own.
+   *
+   * @return the remaining nodes
+   */
+  private @NonNull int[] trim() {
+    final int size = this.forward.size();
+    final int[] inDegrees = this.forward.inDegrees();
+    final int[] outDegrees = this.backward.inDegrees();
+    final int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+
+    for(int id = 0; id < size; id++) {
+      if(inDegrees[id] == 0 || outDegrees[id] == 0) {
+        this.colors[id] = DONE;
+        queue[tail++] = id;
+      }
+    }
+
+    while(head < tail) {
+      final int now = queue[head++];
+      this.components.add(new int[]{now});
+      for(int edge = this.forward.offsets[now], end = this.forward.offsets[now + 1]; edge < end; edge++) {
+        final int successor = this.forward.targets[edge];
+        if(this.colors[successor] != DONE && --inDegrees[successor] == 0) {
+          this.colors[successor] = DONE;
+          queue[tail++] = successor;
+        }
+      }
+      for(int edge = this.backward.offsets[now], end = this.backward.offsets[now + 1]; edge < end; edge++) {
+        final int predecessor = this.backward.targets[edge];
+        if(this.colors[predecessor] != DONE && --outDegrees[predecessor] == 0) {
+          this.colors[predecessor] = DONE;
+          queue[tail++] = predecessor;
+        }
+      }
+    }
+
+    final int[] remaining = new int[size - tail];
+    int count = 0;
+    for(int id = 0; id < size; id++) {
+      if(this.colors[id] != DONE) {
+        remaining[count++] = id;
+      }
+    }
+    return remaining;
+  }
+
+  private final class Search extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final @NonNull int[] nodes;
+    private final int color;
+
+    Search(final @NonNull int[] nodes, final int color) {
+      this.nodes = nodes;
+      this.color = color;
+    }
+
+    @Override
+    protected void compute() {
+      if(this.nodes.length <= ParallelComponentSearch.this.threshold) {
+        ParallelComponentSearch.this.tarjan(this.nodes, this.color);
+        return;
+      }
+
+      final int[] colors = ParallelComponentSearch.this.colors;
+      final int forwardColor = ParallelComponentSearch.this.lastColor.incrementAndGet();
+      final int backwardColor = ParallelComponentSearch.this.lastColor.incrementAndGet();
+      final int pivot = this.nodes[ThreadLocalRandom.current().nextInt(this.nodes.length)];
+      final int[] queue = new int[this.nodes.length];
+
+      int head = 0;
+      int tail = 0;
+      colors[pivot] = forwardColor;
+      queue[tail++] = pivot;
+      while(head < tail) {
+        final int now = queue[head++];
+        final IndexedGraph<?> graph = ParallelComponentSearch.this.forward;
+        for(int edge = graph.offsets[now], end = graph.offsets[now + 1]; edge < end; edge++) {
+          final int successor = graph.targets[edge];
+          if(colors[successor] == this.color) {
+            colors[successor] = forwardColor;
+            queue[tail++] = successor;
+          }
+        }
+      }
+
+      // nodes reached both ways belong to the pivot's component
+      final int[] component = new int[tail];
+      int size = 0;
+      head = 0;
+      tail = 0;
+      colors[pivot] = DONE;
+      component[size++] = pivot;
+      queue[tail++] = pivot;
+      while(head < tail) {
+        final int now = queue[head++];
+        final IndexedGraph<?> graph = ParallelComponentSearch.this.backward;
+        for(int edge = graph.offsets[now], end = graph.offsets[now + 1]; edge < end; edge++) {
+          final int predecessor = graph.targets[edge];
+          if(colors[predecessor] == forwardColor) {
+            colors[predecessor] = DONE;
+            component[size++] = predecessor;
+            queue[tail++] = predecessor;
+          } else if(colors[predecessor] == this.color) {
+            colors[predecessor] = backwardColor;
+            queue[tail++] = predecessor;
+          }
+        }
+      }
+      ParallelComponentSearch.this.components.add(Arrays.copyOf(component, size));
+
+      int forwardSize = 0;
+      int backwardSize = 0;
+      int remainingSize = 0;
+      for(final int node : this.nodes) {
+        final int color = colors[node];
+        if(color == forwardColor) {
+          forwardSize++;
+        } else if(color == backwardColor) {
+          backwardSize++;
+        } else if(color == this.color) {
+          remainingSize++;
+        }
+      }
+      final int[] forwardNodes = new int[forwardSize];
+      final int[] backwardNodes = new int[backwardSize];
+      final int[] remainingNodes = new int[remainingSize];
+      forwardSize = backwardSize = remainingSize = 0;
+      for(final int node : this.nodes) {
+        final int color = colors[node];
+        if(color == forwardColor) {
+          forwardNodes[forwardSize++] = node;
+        } else if(color == backwardColor) {
+          backwardNodes[backwardSize++] = node;
+        } else if(color == this.color) {
+          remainingNodes[remainingSize++] = node;
+        }
+      }
+
+      invokeAll(
+        new Search(forwardNodes, forwardColor),
+        new Search(backwardNodes, backwardColor),
+        new Search(remainingNodes, this.color)
+      );
+    }
+  }
+
+  /**
+   * Runs Tarjan's algorithm over the nodes of a single color.
+   *
+   * <p>Finished nodes are marked as done, so a visited node of the searched color is always
+   * on the stack.</p>
+   *
+   * @param nodes the nodes
+   * @param color the color of the nodes
+   */
+  private void tarjan(final @NonNull int[] nodes, final int color) {
+    final int[] colors = this.colors;
+    final int[] offsets = this.forward.offsets;
+    final int[] targets = this.forward.targets;
+    final int[] frames = new int[nodes.length];
+    final int[] stack = new int[nodes.length];
+    int currentId = 0;
+    int stackSize = 0;
+
+    for(final int root : nodes) {
+      if(colors[root] != color || this.index[root] != UNVISITED) {
+        continue;
+      }
+
+      this.index[root] = this.low[root] = currentId++;
+      this.cursor[root] = offsets[root];
+      stack[stackSize++] = root;
+      frames[0] = root;
+      int depth = 1;
+
+      while(depth > 0) {
+        final int now = frames[depth - 1];
+        if(this.cursor[now] < offsets[now + 1]) {
+          final int node = targets[this.cursor[now]++];
+          if(colors[node] != color) {
+            continue;
+          }
+          if(this.index[node] == UNVISITED) {
+            this.index[node] = this.low[node] = currentId++;
+            this.cursor[node] = offsets[node];
+            stack[stackSize++] = node;
+            frames[depth++] = node;
+          } else {
+            this.low[now] = Math.min(this.index[node], this.low[now]);
+          }
+          continue;
+        }
+
+        depth--;
+        if(this.low[now] == this.index[now]) {
+          int start = stackSize;
+          do {
+            colors[stack[--start]] = DONE;
+          } while(stack[start] != now);
+          this.components.add(Arrays.copyOfRange(stack, start, stackSize));
+          stackSize = start;
+        }
+        if(depth > 0) {
+          final int parent = frames[depth - 1];
+          this.low[parent] = Math.min(this.low[now], this.low[parent]);
+        }
+      }
+    }
+  }
+}
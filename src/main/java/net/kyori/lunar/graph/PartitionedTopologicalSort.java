@@ -0,0 +1,336 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Maps;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The topological sort of a directed graph split into its weakly connected components,
+ * which are sorted independently of each other.
+ *
+ * <p>Nodes in different partitions are never connected, so the cycles of one partition do not
+ * prevent the others from being sorted.</p>
+ *
+ * @param <T> the node type
+ */
+public final class PartitionedTopologicalSort<T> {
+  /**
+   * The number of nodes below which a range of partitions is sorted without splitting it further.
+   */
+  private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
+  private final @NonNull IndexedGraph<T> graph;
+  private final @NonNull int[] partitionIds;
+  private final @NonNull List<Partition<T>> partitions;
+
+  private PartitionedTopologicalSort(final @NonNull Graph<T> source, final @NonNull ForkJoinPool pool) {
+    this.graph = IndexedGraph.of(source);
+    final IndexedGraph<T> graph = this.graph;
+
+    final int size = graph.size();
+    final int[] parents = new int[size];
+    for(int id = 0; id < size; id++) {
+      parents[id] = id;
+    }
+    for(int id = 0; id < size; id++) {
+      for(int edge = graph.offsets[id], end = graph.offsets[id + 1]; edge < end; edge++) {
+        union(parents, id, graph.targets[edge]);
+      }
+    }
+
+    // number the partitions in order of their first node, and group their nodes
+    this.partitionIds = new int[size];
+    final int[] roots = new int[size];
+    int count = 0;
+    for(int id = 0; id < size; id++) {
+      final int root = find(parents, id);
+      if(root == id) {
+        roots[id] = count++;
+      }
+    }
+    final int partitionCount = count;
+    final int[] offsets = new int[count + 1];
+    for(int id = 0; id < size; id++) {
+      this.partitionIds[id] = roots[find(parents, id)];
+      offsets[this.partitionIds[id] + 1]++;
+    }
+    for(int i = 0; i < count; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    final int[] members = new int[size];
+    final int[] cursor = new int[count];
+    for(int id = 0; id < size; id++) {
+      final int partition = this.partitionIds[id];
+      members[offsets[partition] + cursor[partition]++] = id;
+    }
+
+    // partitions own disjoint parts of the in-degree array
+    final int[] inDegrees = graph.inDegrees();
+    @SuppressWarnings("unchecked")
+    final Partition<T>[] partitions = (Partition<T>[]) new Partition<?>[partitionCount];
+    pool.invoke(new Sort(members, offsets, inDegrees, partitions, 0, partitionCount));
+    this.partitions = Collections.unmodifiableList(Arrays.asList(partitions));
+  }
+
+  /**
+   * Sorts a directed graph, partition by partition, in the given pool.
+   *
+   * @param graph the graph
+   * @param pool the pool to sort in
+   * @param <T> the node type
+   * @return the partitioned sort
+   */
+  static <T> @NonNull PartitionedTopologicalSort<T> of(final @NonNull Graph<T> graph, final @NonNull ForkJoinPool pool) {
+    return new PartitionedTopologicalSort<>(graph, pool);
+  }
+
+  private static int find(final @NonNull int[] parents, int id) {
+    while(parents[id] != id) {
+      parents[id] = parents[parents[id]];
+      id = parents[id];
+    }
+    return id;
+  }
+
+  private static void union(final @NonNull int[] parents, final int a, final int b) {
+    final int rootA = find(parents, a);
+    final int rootB = find(parents, b);
+    // the smaller id becomes the root, so partitions are numbered by their first node
+    if(rootA < rootB) {
+      parents[rootB] = rootA;
+    } else if(rootB < rootA) {
+      parents[rootA] = rootB;
+    }
+  }
+
+  private @NonNull Partition<T> sort(final @NonNull int[] members, final int start, final int end, final @NonNull int[] inDegrees) {
+    final int size = end - start;
+    final int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+    for(int i = start; i < end; i++) {
+      if(inDegrees[members[i]] == 0) {
+        queue[tail++] = members[i];
+      }
+    }
+    while(head < tail) {
+      final int now = queue[head++];
+      for(int edge = this.graph.offsets[now], last = this.graph.offsets[now + 1]; edge < last; edge++) {
+        final int successor = this.graph.targets[edge];
+        if(--inDegrees[successor] == 0) {
+          queue[tail++] = successor;
+        }
+      }
+    }
+
+    final List<T> nodes = new ArrayList<>(size);
+    if(tail == size) {
+      for(final int id : queue) {
+        nodes.add(this.graph.node(id));
+      }
+      return new Partition<>(nodes, null);
+    }
+
+    // the in-degrees of this partition are no longer needed, so they now hold the id of each
+    // member within the partition, which has no edges to other partitions
+    final Object[] array = new Object[size];
+    final Map<T, Integer> ids = Maps.newHashMapWithExpectedSize(size);
+    final int[] offsets = new int[size + 1];
+    for(int i = 0; i < size; i++) {
+      final int id = members[start + i];
+      final T node = this.graph.node(id);
+      nodes.add(node);
+      array[i] = node;
+      ids.put(node, i);
+      inDegrees[id] = i;
+      offsets[i + 1] = offsets[i] + this.graph.offsets[id + 1] - this.graph.offsets[id];
+    }
+    final int[] targets = new int[offsets[size]];
+    for(int i = 0; i < size; i++) {
+      final int id = members[start + i];
+      for(int edge = this.graph.offsets[id], last = this.graph.offsets[id + 1], target = offsets[i]; edge < last; edge++) {
+        targets[target++] = inDegrees[this.graph.targets[edge]];
+      }
+    }
+    final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(IndexedGraph.of(array, ids, offsets, targets));
+    analyzer.analyze();
+    return new Partition<>(nodes, analyzer.components());
+  }
+
+  /**
+   * Sorts a range of partitions, splitting it in halves while it holds enough nodes.
+   */
+  private final class Sort extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final @NonNull int[] members;
+    private final @NonNull int[] offsets;
+    private final @NonNull int[] inDegrees;
+    private final @NonNull Partition<T>[] partitions;
+    private final int start;
+    private final int end;
+
+    Sort(final @NonNull int[] members, final @NonNull int[] offsets, final @NonNull int[] inDegrees, final @NonNull Partition<T>[] partitions, final int start, final int end) {
+      this.members = members;
+      this.offsets = offsets;
+      this.inDegrees = inDegrees;
+      this.partitions = partitions;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(this.end - this.start <= 1 || this.offsets[this.end] - this.offsets[this.start] <= SEQUENTIAL_THRESHOLD) {
+        for(int partition = this.start; partition < this.end; partition++) {
+          this.partitions[partition] = PartitionedTopologicalSort.this.sort(this.members, this.offsets[partition], this.offsets[partition + 1], this.inDegrees);
+        }
+        return;
+      }
+
+      final int middle = (this.start + this.end) >>> 1;
+      invokeAll(
+        new Sort(this.members, this.offsets, this.inDegrees, this.partitions, this.start, middle),
+        new Sort(this.members, this.offsets, this.inDegrees, this.partitions, middle, this.end)
+      );
+    }
+  }
+
+  /**
+   * Gets the partitions, in order of their first node in the graph.
+   *
+   * @return the partitions
+   */
+  public @NonNull List<Partition<T>> partitions() {
+    return this.partitions;
+  }
+
+  /**
+   * Gets the partition containing a node.
+   *
+   * @param node the node
+   * @return the partition
+   * @throws IllegalArgumentException if the node is not an element of the graph
+   */
+  public @NonNull Partition<T> partition(final @NonNull T node) {
+    return this.partitions.get(this.partitionIds[this.graph.id(node)]);
+  }
+
+  /**
+   * Tests if any partition has cycles.
+   *
+   * @return {@code true} if any partition has cycles
+   */
+  public boolean hasCycles() {
+    for(final Partition<T> partition : this.partitions) {
+      if(partition.cycles != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the sorted list of all nodes, which is the concatenation of the orders of all partitions.
+   *
+   * @return the sorted list
+   * @throws CyclePresentException if any partition has cycles, carrying the components of all of them
+   */
+  public @NonNull List<T> order() {
+    final List<T> results = new ArrayList<>(this.graph.size());
+    final List<Collection<T>> components = new ArrayList<>();
+    for(final Partition<T> partition : this.partitions) {
+      if(partition.cycles != null) {
+        components.addAll(partition.cycles);
+      } else {
+        results.addAll(partition.nodes);
+      }
+    }
+    if(!components.isEmpty()) {
+      throw new CyclePresentException("Graph has cycle(s)", components);
+    }
+    return results;
+  }
+
+  /**
+   * A weakly connected component of the graph.
+   *
+   * @param <T> the node type
+   */
+  public static final class Partition<T> {
+    private final @NonNull List<T> nodes;
+    /**
+     * The strongly connected components of this partition, if it has cycles. A new exception
+     * is created from them every time one is needed, so callers never share an instance.
+     */
+    private final @Nullable List<Collection<T>> cycles;
+
+    Partition(final @NonNull List<T> nodes, final @Nullable List<Collection<T>> cycles) {
+      this.nodes = Collections.unmodifiableList(nodes);
+      this.cycles = cycles == null ? null : Collections.unmodifiableList(cycles);
+    }
+
+    /**
+     * Gets the nodes of this partition, sorted if it has no cycles.
+     *
+     * @return the nodes
+     */
+    public @NonNull List<T> nodes() {
+      return this.nodes;
+    }
+
+    /**
+     * Gets the sorted list of the nodes of this partition.
+     *
+     * @return the sorted list
+     * @throws CyclePresentException if this partition has cycles
+     */
+    public @NonNull List<T> order() {
+      if(this.cycles != null) {
+        throw new CyclePresentException("Graph has cycle(s)", this.cycles);
+      }
+      return this.nodes;
+    }
+
+    /**
+     * Gets the cycles of this partition.
+     *
+     * @return a new exception describing the cycles, or {@link Optional#empty()} if this partition has none
+     */
+    public @NonNull Optional<CyclePresentException> cycles() {
+      return this.cycles == null ? Optional.empty() : Optional.of(new CyclePresentException("Graph has cycle(s)", this.cycles));
+    }
+  }
+}
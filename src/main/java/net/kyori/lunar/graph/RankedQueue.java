@@ -0,0 +1,148 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A priority queue of node ids, ordered by a rank computed once for every node.
+ *
+ * <p>Nodes are ranked by sorting them with a comparator, with equal nodes sharing a rank. The
+ * queue is a binary heap of ids on a primitive array, which breaks ties between equal ranks
+ * by id.</p>
+ */
+final class RankedQueue {
+  private final @NonNull int[] ranks;
+  private final @NonNull int[] heap;
+  private int size;
+
+  private RankedQueue(final @NonNull int[] ranks) {
+    this.ranks = ranks;
+    this.heap = new int[ranks.length];
+  }
+
+  /**
+   * Creates a queue for the nodes of a graph.
+   *
+   * @param graph the graph
+   * @param comparator the comparator to rank nodes by
+   * @param <T> the node type
+   * @return the queue
+   */
+  static <T> @NonNull RankedQueue of(final @NonNull IndexedGraph<T> graph, final @NonNull Comparator<? super T> comparator) {
+    final int size = graph.size();
+    final Object[] nodes = new Object[size];
+    for(int id = 0; id < size; id++) {
+      nodes[id] = graph.node(id);
+    }
+    final Comparator<Object> order = erase(comparator);
+    Arrays.sort(nodes, order);
+
+    final int[] ranks = new int[size];
+    int rank = 0;
+    for(int i = 0; i < size; i++) {
+      if(i > 0 && order.compare(nodes[i - 1], nodes[i]) != 0) {
+        rank++;
+      }
+      ranks[graph.id(nodes[i])] = rank;
+    }
+    return new RankedQueue(ranks);
+  }
+
+  /**
+   * Creates a queue for node ids, where ids with higher keys are ranked first.
+   *
+   * @param keys the keys, indexed by id
+   * @return the queue
+   */
+  static @NonNull RankedQueue descending(final @NonNull long[] keys) {
+    // the distinct keys in ascending order, so the highest key is ranked first
+    final long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for(int i = 0; i < sorted.length; i++) {
+      if(i == 0 || sorted[i] != sorted[distinct - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+
+    final int[] ranks = new int[keys.length];
+    for(int id = 0; id < keys.length; id++) {
+      ranks[id] = distinct - 1 - Arrays.binarySearch(sorted, 0, distinct, keys[id]);
+    }
+    return new RankedQueue(ranks);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static @NonNull Comparator<Object> erase(final @NonNull Comparator<?> comparator) {
+    return (Comparator<Object>) comparator;
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  void add(final int id) {
+    int index = this.size++;
+    while(index > 0) {
+      final int parent = (index - 1) >>> 1;
+      if(!this.less(id, this.heap[parent])) {
+        break;
+      }
+      this.heap[index] = this.heap[parent];
+      index = parent;
+    }
+    this.heap[index] = id;
+  }
+
+  int poll() {
+    final int result = this.heap[0];
+    final int last = this.heap[--this.size];
+    int index = 0;
+    final int half = this.size >>> 1;
+    while(index < half) {
+      int child = (index << 1) + 1;
+      final int right = child + 1;
+      if(right < this.size && this.less(this.heap[right], this.heap[child])) {
+        child = right;
+      }
+      if(!this.less(this.heap[child], last)) {
+        break;
+      }
+      this.heap[index] = this.heap[child];
+      index = child;
+    }
+    this.heap[index] = last;
+    return result;
+  }
+
+  private boolean less(final int a, final int b) {
+    final int rankA = this.ranks[a];
+    final int rankB = this.ranks[b];
+    return rankA < rankB || (rankA == rankB && a < b);
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.Maps;
+import com.google.common.graph.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An index answering whether a node of a graph can be reached from another in constant time.
+ *
+ * <p>The index stores the transitive closure of the graph's strongly connected components as
+ * bit sets. Components are numbered in reverse topological order, so a component can only reach
+ * components numbered no higher than itself, and its bit set only needs to cover those.</p>
+ *
+ * <p>The closure grows with the square of the number of components, at about
+ * {@code n * n / 16} bytes for {@code n} components: an acyclic graph of 200,000 nodes needs
+ * about 2.5 GB. {@link #maximumMemoryFootprint(Graph)} estimates this up front, and
+ * {@link #of(Graph, long)} refuses to build an index over a given size.</p>
+ *
+ * <p>The index is a snapshot: it does not reflect later modifications of the graph.</p>
+ *
+ * @param <T> the node type
+ */
+public final class ReachabilityIndex<T> {
+  private static final int BITS_SHIFT = 6;
+  private static final long ARRAY_HEADER_BYTES = 16;
+  /**
+   * The estimated size of an entry of a hash map from a node to a boxed integer, counting the
+   * entry, the boxed integer, and its share of the table, but not the node itself.
+   */
+  private static final long MAP_ENTRY_BYTES = 56;
+  private final @NonNull Map<T, Integer> components;
+  private final @NonNull long[][] closure;
+
+  private ReachabilityIndex(final @NonNull Map<T, Integer> components, final @NonNull long[][] closure) {
+    this.components = components;
+    this.closure = closure;
+  }
+
+  /**
+   * Creates a reachability index of a directed graph.
+   *
+   * @param graph the graph
+   * @param <T> the node type
+   * @return the reachability index
+   * @throws IllegalArgumentException if the graph is not directed
+   */
+  public static <T> @NonNull ReachabilityIndex<T> of(final @NonNull Graph<T> graph) {
+    return of(graph, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a reachability index of a directed graph, unless it would use more than the given
+   * number of bytes.
+   *
+   * <p>The size of the index is known once the strongly connected components of the graph are
+   * found, before the closure is computed.</p>
+   *
+   * @param graph the graph
+   * @param maximumFootprint the maximum memory footprint of the index, in bytes
+   * @param <T> the node type
+   * @return the reachability index
+   * @throws IllegalArgumentException if the graph is not directed, or if the index would use more
+   *     than {@code maximumFootprint} bytes
+   */
+  public static <T> @NonNull ReachabilityIndex<T> of(final @NonNull Graph<T> graph, final long maximumFootprint) {
+    checkArgument(graph.isDirected(), "the graph must be directed");
+    final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+
+    final StronglyConnectedComponentAnalyzer<T> analyzer = new StronglyConnectedComponentAnalyzer<>(indexed);
+    analyzer.analyze();
+    final int[] component = analyzer.componentIds();
+    final int size = indexed.size();
+    final int count = analyzer.components().size();
+    final long footprint = footprint(size, count);
+    checkArgument(footprint <= maximumFootprint, "the index would use about %s bytes, more than the maximum of %s bytes", footprint, maximumFootprint);
+
+    // group node ids by component
+    final int[] offsets = new int[count + 1];
+    for(final int id : component) {
+      offsets[id + 1]++;
+    }
+    for(int i = 0; i < count; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    final int[] cursor = new int[count];
+    final int[] members = new int[size];
+    for(int id = 0; id < size; id++) {
+      members[offsets[component[id]] + cursor[component[id]]++] = id;
+    }
+
+    final long[][] closure = new long[count][];
+    for(int current = 0; current < count; current++) {
+      final long[] row = new long[(current >> BITS_SHIFT) + 1];
+      set(row, current);
+      for(int member = offsets[current], end = offsets[current + 1]; member < end; member++) {
+        final int id = members[member];
+        for(int edge = indexed.offsets[id], last = indexed.offsets[id + 1]; edge < last; edge++) {
+          final int target = component[indexed.targets[edge]];
+          // a component already reached brings nothing new
+          if(!get(row, target)) {
+            final long[] reached = closure[target];
+            for(int i = 0; i < reached.length; i++) {
+              row[i] |= reached[i];
+            }
+          }
+        }
+      }
+      closure[current] = row;
+    }
+
+    // only the component of each node is kept, not the graph
+    final Map<T, Integer> components = Maps.newHashMapWithExpectedSize(size);
+    for(int id = 0; id < size; id++) {
+      components.put(indexed.node(id), component[id]);
+    }
+    return new ReachabilityIndex<>(components, closure);
+  }
+
+  /**
+   * Estimates the largest number of bytes an index of the given graph may use, which is
+   * reached when the graph has no cycles.
+   *
+   * @param graph the graph
+   * @return the estimated memory footprint, in bytes
+   */
+  public static long maximumMemoryFootprint(final @NonNull Graph<?> graph) {
+    final int size = graph.nodes().size();
+    return footprint(size, size);
+  }
+
+  /**
+   * Tests if there is a path from one node to another. Every node can reach itself.
+   *
+   * @param source the source node
+   * @param target the target node
+   * @return {@code true} if {@code target} can be reached from {@code source}
+   * @throws IllegalArgumentException if either node is not an element of the graph
+   */
+  public boolean reaches(final @NonNull T source, final @NonNull T target) {
+    final int from = this.component(source);
+    final int to = this.component(target);
+    return to <= from && get(this.closure[from], to);
+  }
+
+  /**
+   * Estimates the number of bytes used by this index, not counting the nodes themselves.
+   *
+   * @return the estimated memory footprint, in bytes
+   */
+  public long memoryFootprint() {
+    return footprint(this.components.size(), this.closure.length);
+  }
+
+  private int component(final @NonNull T node) {
+    final Integer component = this.components.get(node);
+    if(component == null) {
+      throw new IllegalArgumentException("Node " + node + " is not an element of this graph");
+    }
+    return component;
+  }
+
+  /**
+   * Estimates the number of bytes used by an index of a graph.
+   *
+   * @param size the number of nodes
+   * @param count the number of strongly connected components
+   * @return the estimated memory footprint, in bytes
+   */
+  private static long footprint(final long size, final long count) {
+    // the row of component c holds (c >> BITS_SHIFT) + 1 words
+    final long blocks = count >> BITS_SHIFT;
+    final long words = Long.SIZE * blocks * (blocks + 1) / 2 + (count - (blocks << BITS_SHIFT)) * (blocks + 1);
+    return size * MAP_ENTRY_BYTES + ARRAY_HEADER_BYTES + count * (Integer.BYTES + ARRAY_HEADER_BYTES) + words * Long.BYTES;
+  }
+
+  private static boolean get(final @NonNull long[] bits, final int index) {
+    return (bits[index >> BITS_SHIFT] & (1L << index)) != 0;
+  }
+
+  private static void set(final @NonNull long[] bits, final int index) {
+    bits[index >> BITS_SHIFT] |= 1L << index;
+  }
+}
@@ -24,9 +24,10 @@
 package net.kyori.lunar.graph;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.ArrayDeque;
-import java.util.PriorityQueue;
+import java.util.Comparator;
 import java.util.Queue;
 
 /**
@@ -44,7 +45,7 @@ interface SortType<T> {
   /**
    * The sort type that collects nodes from the graph based on natural ordering.
    */
-  SortType<? extends Comparable<?>> COMPARABLE = PriorityQueue::new;
+  SortType<? extends Comparable<?>> COMPARABLE = new ComparatorSortType<>(Comparator.naturalOrder());
 
   /**
    * Create a queue for node collection for the resulting list.
@@ -53,6 +54,18 @@ interface SortType<T> {
    */
   @NonNull Queue<T> createQueue();
 
+  /**
+   * Gets the comparator this sort type collects nodes by, if any.
+   *
+   * <p>Sorters may rank all nodes with the comparator up front instead of using
+   * {@link #createQueue()}, as long as nodes are collected in the same order.</p>
+   *
+   * @return the comparator, or {@code null}
+   */
+  default @Nullable Comparator<? super T> comparator() {
+    return null;
+  }
+
   /**
    * Gets the type-safe instance of the random sort type.
    *
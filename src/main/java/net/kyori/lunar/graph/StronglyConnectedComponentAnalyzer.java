@@ -28,95 +28,149 @@ import com.google.common.graph.Graph;
 import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * An analyzer finding out all the strongly connected components in a graph.
  *
- * <p>This is based on Tarjan's Strongly Connected Component algorithm.</p>
+ * <p>This is based on Tarjan's Strongly Connected Component algorithm. The depth-first
+ * search keeps its own stack of frames, so the analysis does not depend on the depth
+ * of the graph.</p>
  *
  * @param <T> the graph's node type
  */
 @VisibleForTesting
 final class StronglyConnectedComponentAnalyzer<T> {
-  private final @NonNull Map<T, Integer> ids = new HashMap<>();
-  private final @NonNull Deque<T> stack = new ArrayDeque<>();
-  private final @NonNull Collection<Collection<T>> components = new ArrayList<>();
-  private final @NonNull Graph<T> graph;
-  private final @NonNull int[] low;
-  private @NonNegative int currentId = 0;
+  /**
+   * The number of nodes below which graphs are not analyzed in parallel.
+   */
+  static final int PARALLEL_THRESHOLD = 1 << 12;
+  private static final int UNVISITED = -1;
+  private final @NonNull List<Collection<T>> components = new ArrayList<>();
+  private final @NonNull IndexedGraph<T> graph;
+  private final @NonNull int[] component;
 
   @VisibleForTesting
   StronglyConnectedComponentAnalyzer(final @NonNull Graph<T> graph) {
+    this(IndexedGraph.of(graph));
+  }
+
+  StronglyConnectedComponentAnalyzer(final @NonNull IndexedGraph<T> graph) {
     this.graph = graph;
-    this.low = new int[graph.nodes().size()];
+    this.component = new int[graph.size()];
   }
 
   @VisibleForTesting
   void analyze() {
-    for(final T node : this.graph.nodes()) {
-      if(!this.ids.containsKey(node)) {
-        this.dfs(node);
+    final int size = this.graph.size();
+    final int[] offsets = this.graph.offsets;
+    final int[] targets = this.graph.targets;
+    final int[] index = new int[size];
+    final int[] low = new int[size];
+    // the next edge to explore, per node
+    final int[] cursor = new int[size];
+    final int[] frames = new int[size];
+    final int[] stack = new int[size];
+    final BitSet onStack = new BitSet(size);
+    Arrays.fill(index, UNVISITED);
+    @NonNegative int currentId = 0;
+    int stackSize = 0;
+
+    for(int root = 0; root < size; root++) {
+      if(index[root] != UNVISITED) {
+        continue;
       }
-    }
-  }
 
-  @VisibleForTesting
-  @NonNull Collection<Collection<T>> components() {
-    return this.components;
-  }
+      index[root] = low[root] = currentId++;
+      cursor[root] = offsets[root];
+      stack[stackSize++] = root;
+      onStack.set(root);
+      frames[0] = root;
+      int depth = 1;
 
-  @NonNull String renderCycles() {
-    final StringBuilder reporter = new StringBuilder();
-    for(final Collection<T> component : this.components) {
-      if(component.size() > 1) {
-        reporter.append('{');
-        boolean separate = false;
-        for(final T each : component) {
-          if(separate) {
-            reporter.append(',');
-            reporter.append(' ');
-          } else {
-            separate = true;
+      while(depth > 0) {
+        final int now = frames[depth - 1];
+        if(cursor[now] < offsets[now + 1]) {
+          final int node = targets[cursor[now]++];
+          if(index[node] == UNVISITED) {
+            index[node] = low[node] = currentId++;
+            cursor[node] = offsets[node];
+            stack[stackSize++] = node;
+            onStack.set(node);
+            frames[depth++] = node;
+          } else if(onStack.get(node)) {
+            low[now] = Math.min(index[node], low[now]);
           }
-          reporter.append(Objects.toString(each));
+          continue;
+        }
+
+        depth--;
+        if(low[now] == index[now]) {
+          final Collection<T> component = new ArrayList<>();
+          int removed;
+          do {
+            removed = stack[--stackSize];
+            onStack.clear(removed);
+            this.component[removed] = this.components.size();
+            component.add(this.graph.node(removed));
+          } while(removed != now);
+          this.components.add(component);
+        }
+        if(depth > 0) {
+          final int parent = frames[depth - 1];
+          low[parent] = Math.min(low[now], low[parent]);
         }
-        reporter.append('}').append(';');
       }
     }
-    return reporter.toString();
   }
 
-  private void dfs(final T now) {
-    this.ids.put(now, this.currentId);
-    final int self = this.currentId;
-    this.low[self] = self;
-    this.stack.push(now);
-    this.currentId++;
+  /**
+   * Analyzes the graph in parallel, unless it is too small to benefit from it.
+   *
+   * <p>Unlike {@link #analyze()}, the components are discovered in no particular order.</p>
+   *
+   * @param pool the pool to analyze in
+   */
+  @VisibleForTesting
+  void analyze(final @NonNull ForkJoinPool pool) {
+    this.analyze(pool, PARALLEL_THRESHOLD);
+  }
 
-    for(final T node : this.graph.successors(now)) {
-      if(this.ids.containsKey(node)) {
-        this.low[self] = Math.min(this.ids.get(node), this.low[self]);
-      } else {
-        this.dfs(node);
-        this.low[self] = Math.min(this.low[this.ids.get(node)], this.low[self]);
-      }
+  @VisibleForTesting
+  void analyze(final @NonNull ForkJoinPool pool, final int threshold) {
+    if(this.graph.size() < threshold) {
+      this.analyze();
+      return;
     }
-
-    if(this.low[self] == self) {
-      final Collection<T> component = new ArrayList<>();
-      T removed;
-      do {
-        removed = this.stack.pop();
-        component.add(removed);
-      } while(removed != now);
+    for(final int[] ids : new ParallelComponentSearch(this.graph, threshold).search(pool)) {
+      final Collection<T> component = new ArrayList<>(ids.length);
+      for(final int id : ids) {
+        this.component[id] = this.components.size();
+        component.add(this.graph.node(id));
+      }
       this.components.add(component);
     }
   }
+
+  @VisibleForTesting
+  @NonNull List<Collection<T>> components() {
+    return this.components;
+  }
+
+  /**
+   * Gets the index in {@link #components()} of the component containing each node.
+   *
+   * <p>When analyzed sequentially, components are discovered in reverse topological order:
+   * every component only has edges to components with a lower index.</p>
+   *
+   * @return the component indexes, indexed by node id
+   */
+  @NonNull int[] componentIds() {
+    return this.component;
+  }
 }
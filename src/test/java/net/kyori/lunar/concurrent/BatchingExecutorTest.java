@@ -0,0 +1,170 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingExecutorTest {
+  private CompletableExecutorService executorService;
+  private ManualScheduler scheduler;
+  private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+  private final Function<List<Integer>, List<String>> handler = items -> {
+    this.batches.add(new ArrayList<>(items));
+    return items.stream().map(item -> "v" + item).collect(Collectors.toList());
+  };
+
+  @BeforeEach
+  void setUp() {
+    this.executorService = EvenMoreExecutors.completableDecorator(Executors.newFixedThreadPool(2));
+    this.scheduler = new ManualScheduler();
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.executorService.shutdown();
+    this.scheduler.shutdown();
+  }
+
+  @Test
+  void testBatchBySize() throws Exception {
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 3, 1, TimeUnit.HOURS, this.handler);
+    final List<CompletableFuture<String>> futures = new ArrayList<>();
+    for(int i = 0; i < 6; i++) {
+      futures.add(executor.submit(i));
+    }
+    for(int i = 0; i < 6; i++) {
+      assertEquals("v" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    // the two batches are handled on different threads, so they may finish in either order
+    assertEquals(new HashSet<>(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5))), new HashSet<>(this.batches));
+  }
+
+  @Test
+  void testBatchByLinger() throws Exception {
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 100, 20, TimeUnit.MILLISECONDS, this.handler);
+    final CompletableFuture<String> first = executor.submit(1);
+    final CompletableFuture<String> second = executor.submit(2);
+    assertEquals(Collections.singletonList(TimeUnit.MILLISECONDS.toNanos(20)), this.scheduler.delays);
+    assertFalse(first.isDone());
+
+    this.scheduler.fire();
+    assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+    assertEquals("v2", second.get(5, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList(Arrays.asList(1, 2)), this.batches);
+  }
+
+  @Test
+  void testFlush() throws Exception {
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 100, 1, TimeUnit.HOURS, this.handler);
+    final CompletableFuture<String> future = executor.submit(1);
+    executor.flush();
+    assertEquals("v1", future.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testHandlerFailure() {
+    final IllegalStateException failure = new IllegalStateException();
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 2, 1, TimeUnit.HOURS, items -> {
+      throw failure;
+    });
+    final CompletableFuture<String> first = executor.submit(1);
+    final CompletableFuture<String> second = executor.submit(2);
+    assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+    assertSame(failure, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+  }
+
+  @Test
+  void testWrongResultCount() {
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 2, 1, TimeUnit.HOURS, items -> Collections.singletonList("v"));
+    final CompletableFuture<String> first = executor.submit(1);
+    executor.submit(2);
+    assertTrue(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+  }
+
+  @Test
+  void testRejectedTimer() throws Exception {
+    final BatchingExecutor<Integer, String> executor = new BatchingExecutor<>(this.executorService, this.scheduler, 2, 1, TimeUnit.HOURS, this.handler);
+    this.scheduler.shutdown();
+    assertThrows(RejectedExecutionException.class, () -> executor.submit(1));
+    // the rejected item did not leave a batch without a timer behind, for later items to wait in
+    assertThrows(RejectedExecutionException.class, () -> executor.submit(2));
+    assertTrue(this.batches.isEmpty());
+  }
+
+  /**
+   * A scheduler which holds back every delayed task until the test fires it.
+   */
+  private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+    private final List<Runnable> timers = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> delays = Collections.synchronizedList(new ArrayList<>());
+
+    ManualScheduler() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+      if(delay <= 0) {
+        return super.schedule(command, delay, unit);
+      }
+      // the task is still scheduled, so it can be rejected and cancelled, but too late to ever run
+      final ScheduledFuture<?> future = super.schedule(command, 1, TimeUnit.DAYS);
+      this.timers.add(command);
+      this.delays.add(unit.toNanos(delay));
+      return future;
+    }
+
+    void fire() {
+      final List<Runnable> timers;
+      synchronized(this.timers) {
+        timers = new ArrayList<>(this.timers);
+        this.timers.clear();
+      }
+      timers.forEach(Runnable::run);
+    }
+  }
+}
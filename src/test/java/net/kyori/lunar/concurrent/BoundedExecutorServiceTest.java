@@ -0,0 +1,193 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedExecutorServiceTest {
+  private ExecutorService delegate;
+  private CountDownLatch gate;
+  private CountDownLatch started;
+
+  @BeforeEach
+  void setUp() {
+    this.delegate = Executors.newSingleThreadExecutor();
+    this.gate = new CountDownLatch(1);
+    this.started = new CountDownLatch(1);
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.gate.countDown();
+    this.delegate.shutdownNow();
+  }
+
+  /**
+   * Occupies both permits: one with a running task held at the gate, and one with a queued task.
+   */
+  private CompletableFuture<Integer> occupy(final BoundedExecutorService executor) throws InterruptedException {
+    executor.submit(() -> {
+      this.started.countDown();
+      this.gate.await();
+      return 0;
+    });
+    assertTrue(this.started.await(5, TimeUnit.SECONDS));
+    return executor.submit(() -> 1);
+  }
+
+  @Test
+  void testBlock() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 2, BoundedExecutorService.Policy.BLOCK);
+    this.occupy(executor);
+    final CompletableFuture<CompletableFuture<Integer>> submission = new CompletableFuture<>();
+    final Thread submitter = new Thread(() -> submission.complete(executor.submit(() -> 2)));
+    submitter.start();
+    // the submitter parks once it waits for a permit
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while(submitter.getState() != Thread.State.WAITING) {
+      assertTrue(System.nanoTime() < deadline);
+      Thread.yield();
+    }
+    assertFalse(submission.isDone());
+    assertEquals(1, executor.blockedSubmissions());
+    this.gate.countDown();
+    assertEquals(2, (int) submission.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+    assertEquals(1, executor.blockedSubmissions());
+    assertEquals(3, executor.admittedTasks());
+  }
+
+  @Test
+  void testCallerRuns() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 2, BoundedExecutorService.Policy.CALLER_RUNS);
+    this.occupy(executor);
+    final Thread caller = Thread.currentThread();
+    final CompletableFuture<Thread> future = executor.submit(Thread::currentThread);
+    assertTrue(future.isDone());
+    assertEquals(caller, future.get());
+    assertEquals(1, executor.callerRunTasks());
+    assertEquals(0, executor.availablePermits());
+  }
+
+  @Test
+  void testFailFast() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 2, BoundedExecutorService.Policy.FAIL_FAST);
+    final CompletableFuture<Integer> queued = this.occupy(executor);
+    final CompletableFuture<Integer> future = executor.submit(() -> 2);
+    final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+    assertEquals(2, executor.rejectedTasks());
+
+    this.gate.countDown();
+    assertEquals(1, (int) queued.get(5, TimeUnit.SECONDS));
+    this.delegate.shutdown();
+    assertTrue(this.delegate.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(2, executor.availablePermits());
+    assertEquals(2, executor.completedTasks());
+  }
+
+  @Test
+  void testDropOldest() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 2, BoundedExecutorService.Policy.DROP_OLDEST);
+    final CompletableFuture<Integer> queued = this.occupy(executor);
+    final CompletableFuture<Integer> second = executor.submit(() -> 2);
+    final CompletableFuture<Integer> third = executor.submit(() -> 3);
+    assertTrue(queued.isCancelled());
+    assertTrue(second.isCancelled());
+    assertThrows(CancellationException.class, queued::join);
+    assertEquals(2, executor.droppedTasks());
+    assertEquals(1, executor.waitingTasks());
+
+    this.gate.countDown();
+    assertEquals(3, (int) third.get(5, TimeUnit.SECONDS));
+    this.delegate.shutdown();
+    assertTrue(this.delegate.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(2, executor.availablePermits());
+    assertEquals(0, executor.waitingTasks());
+  }
+
+  @Test
+  void testDropOldestKeepsOrder() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 3, BoundedExecutorService.Policy.DROP_OLDEST);
+    final CompletableFuture<Integer> queued = this.occupy(executor);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    final CompletableFuture<Integer> second = executor.submit(() -> {
+      order.add(2);
+      return 2;
+    });
+    final CompletableFuture<Integer> third = executor.submit(() -> {
+      order.add(3);
+      return 3;
+    });
+    assertTrue(queued.isCancelled());
+
+    this.gate.countDown();
+    assertEquals(2, (int) second.get(5, TimeUnit.SECONDS));
+    assertEquals(3, (int) third.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(2, 3), order);
+  }
+
+  @Test
+  void testDelegateRejection() {
+    this.delegate.shutdown();
+    for(final BoundedExecutorService.Policy policy : BoundedExecutorService.Policy.values()) {
+      final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 2, policy);
+      assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+      assertEquals(1, executor.rejectedTasks());
+      assertEquals(0, executor.admittedTasks());
+      assertEquals(2, executor.availablePermits());
+      assertEquals(0, executor.waitingTasks());
+    }
+  }
+
+  @Test
+  void testDropOldestForgetsStartedTasks() throws Exception {
+    final BoundedExecutorService executor = EvenMoreExecutors.bounded(this.delegate, 4, BoundedExecutorService.Policy.DROP_OLDEST);
+    for(int i = 0; i < 10_000; i++) {
+      executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+    assertEquals(0, executor.droppedTasks());
+    assertEquals(0, executor.waitingTasks());
+  }
+}
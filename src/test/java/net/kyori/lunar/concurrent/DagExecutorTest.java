@@ -0,0 +1,156 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DagExecutorTest {
+  @Test
+  void testResultsInTopologicalOrder() throws Exception {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("c", "b");
+    graph.putEdge("b", "a");
+    graph.putEdge("c", "a");
+    graph.addNode("d");
+
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+      final Map<String, String> results = new DagExecutor(EvenMoreExecutors.completableDecorator(pool)).execute(graph, node -> {
+        ran.add(node);
+        return node.toUpperCase();
+      }).get(5, TimeUnit.SECONDS);
+      assertEquals(Arrays.asList("c", "d", "b", "a"), new ArrayList<>(results.keySet()));
+      assertEquals("B", results.get("b"));
+      assertTrue(ran.indexOf("c") < ran.indexOf("b"));
+      assertTrue(ran.indexOf("b") < ran.indexOf("a"));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testFailureSkipsSuccessors() {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("a", "b");
+    graph.putEdge("b", "c");
+    graph.putEdge("x", "y");
+
+    final Set<String> ran = ConcurrentHashMap.newKeySet();
+    final IllegalStateException failure = new IllegalStateException();
+    final ExecutionException exception = assertThrows(ExecutionException.class, () -> new DagExecutor(EvenMoreExecutors.completableDecorator(MoreExecutors.newDirectExecutorService())).execute(graph, node -> {
+      ran.add(node);
+      if(node.equals("a")) {
+        throw failure;
+      }
+      return node;
+    }).get(5, TimeUnit.SECONDS));
+    assertSame(failure, exception.getCause());
+    assertEquals(new HashSet<>(Arrays.asList("a", "x", "y")), ran);
+  }
+
+  @Test
+  void testInlineExecutorLongChain() throws Exception {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    for(int i = 1; i < 50_000; i++) {
+      graph.putEdge(i - 1, i);
+    }
+
+    final Map<Integer, Integer> results = new DagExecutor(EvenMoreExecutors.completableDecorator(MoreExecutors.newDirectExecutorService())).execute(graph, node -> node).get(5, TimeUnit.SECONDS);
+    assertEquals(50_000, results.size());
+    assertEquals(49_999, (int) results.get(49_999));
+  }
+
+  @Test
+  void testNestedExecution() throws Exception {
+    final MutableGraph<String> outer = GraphBuilder.directed().build();
+    outer.putEdge("a", "b");
+    final MutableGraph<String> inner = GraphBuilder.directed().build();
+    inner.putEdge("x", "y");
+
+    final DagExecutor executor = new DagExecutor(EvenMoreExecutors.completableDecorator(MoreExecutors.newDirectExecutorService()));
+    final Map<String, Integer> results = executor.execute(outer, node -> {
+      try {
+        return executor.execute(inner, Function.identity()).get(5, TimeUnit.SECONDS).size();
+      } catch(final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }).get(5, TimeUnit.SECONDS);
+    assertEquals(2, (int) results.get("a"));
+    assertEquals(2, (int) results.get("b"));
+  }
+
+  @Test
+  void testSharedFailure() {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.addNode("a");
+    graph.addNode("b");
+
+    final IllegalStateException failure = new IllegalStateException();
+    final CompletableFuture<Map<String, String>> result = new DagExecutor(EvenMoreExecutors.completableDecorator(MoreExecutors.newDirectExecutorService())).execute(graph, node -> {
+      throw failure;
+    });
+    final ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+    assertSame(failure, exception.getCause());
+    assertEquals(0, failure.getSuppressed().length);
+  }
+
+  @Test
+  void testDistinctFailuresSuppressed() {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.addNode("a");
+    graph.addNode("b");
+
+    final CompletableFuture<Map<String, String>> result = new DagExecutor(EvenMoreExecutors.completableDecorator(MoreExecutors.newDirectExecutorService())).execute(graph, node -> {
+      throw new IllegalStateException(node);
+    });
+    final CompletionException exception = assertThrows(CompletionException.class, result::join);
+    assertEquals(1, exception.getSuppressed().length);
+    assertEquals(0, exception.getCause().getSuppressed().length);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForkJoinCompletableExecutorServiceTest {
+  @Test
+  void testForkedFromWorker() throws Exception {
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final CompletableExecutorService executor = EvenMoreExecutors.forkJoin(pool);
+      final CompletableFuture<Integer> future = executor.submit(() -> {
+        assertTrue(Thread.currentThread() instanceof ForkJoinWorkerThread);
+        // submitted from a worker, so forked onto its own deque
+        return executor.submit(() -> 21).thenApply(value -> value * 2).get();
+      });
+      assertEquals(42, (int) future.get(5, TimeUnit.SECONDS));
+      assertEquals("done", executor.submit(() -> { }, "done").get(5, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testFailure() {
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final CompletableExecutorService executor = EvenMoreExecutors.forkJoin(pool);
+      final IllegalStateException failure = new IllegalStateException();
+      final CompletableFuture<?> future = executor.submit(() -> {
+        throw failure;
+      });
+      final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+      assertSame(failure, exception.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testDecoratesForkJoinPool() {
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      assertTrue(EvenMoreExecutors.completableDecorator(pool) instanceof ForkJoinCompletableExecutorService);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
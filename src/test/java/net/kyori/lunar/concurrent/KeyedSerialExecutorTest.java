@@ -0,0 +1,143 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedSerialExecutorTest {
+  private static final int SUBMITTERS = 3;
+
+  @Test
+  void testFifoPerKey() throws Exception {
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      final KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool);
+      final int keys = 8;
+      final int tasks = 2000;
+      final int[] last = new int[keys];
+      final AtomicInteger[] running = new AtomicInteger[keys];
+      final AtomicInteger violations = new AtomicInteger();
+      final List<CompletableFuture<?>> futures = new ArrayList<>();
+      for(int key = 0; key < keys; key++) {
+        last[key] = -1;
+        running[key] = new AtomicInteger();
+      }
+      for(int i = 0; i < tasks; i++) {
+        for(int key = 0; key < keys; key++) {
+          final int k = key;
+          final int index = i;
+          futures.add(executor.submit(key, () -> {
+            if(running[k].incrementAndGet() != 1 || last[k] != index - 1) {
+              violations.incrementAndGet();
+            }
+            last[k] = index;
+            running[k].decrementAndGet();
+          }));
+        }
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+      assertEquals(0, violations.get());
+      for(int key = 0; key < keys; key++) {
+        assertEquals(tasks - 1, last[key]);
+      }
+      awaitIdle(executor);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testConcurrentSubmittersLoseNoTasks() throws Exception {
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+    final ExecutorService submitters = Executors.newFixedThreadPool(SUBMITTERS);
+    try {
+      final KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+      for(int round = 0; round < 2000; round++) {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<CompletableFuture<List<CompletableFuture<Integer>>>> batches = new ArrayList<>();
+        for(int submitter = 0; submitter < SUBMITTERS; submitter++) {
+          batches.add(CompletableFuture.supplyAsync(() -> {
+            try {
+              start.await();
+            } catch(final InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+            final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for(int i = 0; i < 3; i++) {
+              final int value = i;
+              futures.add(executor.submit("key", () -> value));
+            }
+            return futures;
+          }, submitters));
+        }
+        start.countDown();
+        for(final CompletableFuture<List<CompletableFuture<Integer>>> batch : batches) {
+          for(final CompletableFuture<Integer> future : batch.get(5, TimeUnit.SECONDS)) {
+            future.get(5, TimeUnit.SECONDS);
+          }
+        }
+      }
+      awaitIdle(executor);
+    } finally {
+      submitters.shutdown();
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testRejected() throws Exception {
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+    final KeyedExecutor<String> executor = EvenMoreExecutors.keyedSerial(pool);
+    assertEquals(1, (int) executor.submit("key", () -> 1).get(5, TimeUnit.SECONDS));
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    final CompletableFuture<?> future = executor.submit("key", () -> { });
+    final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof RejectedExecutionException);
+  }
+
+  private static void awaitIdle(final KeyedSerialExecutor<?> executor) throws InterruptedException {
+    // a lane retires just after its last task completes its future
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while(executor.busyKeys() != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(0, executor.busyKeys());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickExecutorTest {
+  @Test
+  void testRunsOnlyOnTick() {
+    final TickExecutor executor = new TickExecutor();
+    final List<Integer> ran = new ArrayList<>();
+    final CompletableFuture<Integer> future = executor.submit(() -> 1);
+    executor.execute(() -> ran.add(2));
+    assertFalse(future.isDone());
+    assertEquals(2, executor.pendingTasks());
+
+    assertEquals(2, executor.runTick(TimeUnit.SECONDS.toNanos(1)));
+    assertTrue(future.isDone());
+    assertEquals(Arrays.asList(2), ran);
+    assertEquals(2, executor.drainedTasks());
+    assertEquals(0, executor.deferredTasks());
+    assertEquals(0, executor.pendingTasks());
+  }
+
+  @Test
+  void testBudget() {
+    final TickExecutor executor = new TickExecutor();
+    for(int i = 0; i < 5; i++) {
+      executor.execute(() -> {
+        final long start = System.nanoTime();
+        while(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2)) {
+          Thread.onSpinWait();
+        }
+      });
+    }
+
+    // the budget runs out after the first task, but that one always runs
+    assertEquals(1, executor.runTick(0));
+    assertEquals(4, executor.deferredTasks());
+    assertEquals(4, executor.pendingTasks());
+    assertEquals(4, executor.runTick(TimeUnit.SECONDS.toNanos(1)));
+    assertEquals(5, executor.drainedTasks());
+    assertEquals(4, executor.deferredTasks());
+  }
+
+  @Test
+  void testTasksSubmittedDuringTickWait() {
+    final TickExecutor executor = new TickExecutor();
+    final List<String> ran = new ArrayList<>();
+    executor.execute(() -> {
+      ran.add("first");
+      executor.execute(() -> ran.add("continuation"));
+    });
+
+    assertEquals(1, executor.runTick(TimeUnit.SECONDS.toNanos(1)));
+    assertEquals(Arrays.asList("first"), ran);
+    assertEquals(1, executor.runTick(TimeUnit.SECONDS.toNanos(1)));
+    assertEquals(Arrays.asList("first", "continuation"), ran);
+  }
+
+  @Test
+  void testOwnerThread() throws InterruptedException {
+    final TickExecutor executor = new TickExecutor();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Thread other = new Thread(() -> {
+      try {
+        executor.runTick(1);
+      } catch(final Throwable t) {
+        failure.set(t);
+      }
+    });
+    other.start();
+    other.join();
+    assertTrue(failure.get() instanceof IllegalStateException);
+  }
+
+  @Test
+  void testShutdown() {
+    final TickExecutor executor = new TickExecutor();
+    final CompletableFuture<Integer> future = executor.submit(() -> 1);
+    executor.shutdown();
+    assertTrue(executor.isShutdown());
+    assertFalse(executor.isTerminated());
+    assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+
+    executor.runTick(TimeUnit.SECONDS.toNanos(1));
+    assertTrue(future.isDone());
+    assertTrue(executor.isTerminated());
+  }
+
+  @Test
+  void testShutdownNow() throws InterruptedException {
+    final TickExecutor executor = new TickExecutor();
+    executor.execute(() -> { });
+    assertEquals(1, executor.shutdownNow().size());
+    assertEquals(0, executor.pendingTasks());
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.ElementOrder;
+import com.google.common.graph.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentGraphBuilderTest {
+  @Test
+  void testBuild() {
+    final ConcurrentGraphBuilder<Integer> builder = new ConcurrentGraphBuilder<>();
+    assertTrue(builder.putEdge(1, 2));
+    assertFalse(builder.putEdge(1, 2));
+    assertFalse(builder.addNode(2));
+    assertTrue(builder.addNode(3));
+    assertThrows(IllegalArgumentException.class, () -> builder.putEdge(3, 3));
+
+    final Graph<Integer> graph = builder.build();
+    assertEquals(3, graph.nodes().size());
+    assertEquals(1, graph.edges().size());
+    assertTrue(graph.successors(1).contains(2));
+    assertTrue(graph.successors(3).isEmpty());
+    assertEquals(ElementOrder.unordered(), graph.nodeOrder());
+  }
+
+  @Test
+  void testParallelPutEdge() {
+    final ConcurrentGraphBuilder<Integer> builder = new ConcurrentGraphBuilder<>();
+    IntStream.range(0, 100_000).parallel().forEach(i -> {
+      builder.putEdge(i % 1000, 1000 + i);
+      builder.putEdge(1000 + i, 200_000);
+    });
+
+    final Graph<Integer> graph = builder.build();
+    assertEquals(101_001, graph.nodes().size());
+    assertEquals(200_000, graph.edges().size());
+    assertEquals(100_000, graph.inDegree(200_000));
+    final List<Integer> order = MoreGraphs.topologicalSort(graph);
+    assertEquals(200_000, (int) order.get(order.size() - 1));
+  }
+}
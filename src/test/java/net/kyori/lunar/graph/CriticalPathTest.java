@@ -0,0 +1,74 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CriticalPathTest {
+  @Test
+  void testCriticalPath() {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("a", "b");
+    graph.putEdge("a", "c");
+    graph.putEdge("b", "d");
+    graph.putEdge("c", "d");
+    graph.addNode("e");
+
+    final CriticalPath<String> path = CriticalPath.of(graph, node -> node.equals("c") ? 5 : node.equals("e") ? 3 : 1);
+    assertEquals(7, path.length());
+    assertEquals(Arrays.asList("a", "c", "d"), path.path());
+    assertEquals(1, path.earliestStart("b"));
+    assertEquals(5, path.latestStart("b"));
+    assertEquals(4, path.slack("b"));
+    assertEquals(0, path.slack("c"));
+    assertEquals(4, path.slack("e"));
+    assertEquals(Arrays.asList("a", "c", "e", "b", "d"), path.priorityOrder());
+
+    // the analysis is a snapshot, so later changes to the graph are not seen
+    graph.putEdge("f", "a");
+    assertEquals(Arrays.asList("a", "c", "e", "b", "d"), path.priorityOrder());
+  }
+
+  @Test
+  void testCriticalPathWithDelays() {
+    final MutableValueGraph<String, Long> graph = ValueGraphBuilder.directed().build();
+    graph.putEdgeValue("a", "b", 10L);
+    graph.putEdgeValue("a", "c", 0L);
+    graph.putEdgeValue("b", "d", 0L);
+    graph.putEdgeValue("c", "d", 0L);
+
+    final CriticalPath<String> path = CriticalPath.of(graph, node -> node.equals("c") ? 5 : 1, Long::longValue);
+    assertEquals(13, path.length());
+    assertEquals(Arrays.asList("a", "b", "d"), path.path());
+    assertEquals(6, path.slack("c"));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.MutableGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DominatorTreeTest {
+  @Test
+  void testDominators() {
+    final MutableGraph<String> graph = GraphBuilder.directed().allowsSelfLoops(true).build();
+    graph.putEdge("r", "a");
+    graph.putEdge("r", "b");
+    graph.putEdge("a", "c");
+    graph.putEdge("b", "c");
+    graph.putEdge("c", "d");
+    graph.putEdge("d", "e");
+    graph.putEdge("e", "d");
+    graph.putEdge("x", "d");
+
+    final DominatorTree<String> tree = DominatorTree.of(graph, "r");
+    assertEquals("r", tree.root());
+    assertEquals(Optional.empty(), tree.immediateDominator("r"));
+    assertEquals(Optional.of("r"), tree.immediateDominator("c"));
+    assertEquals(Optional.of("c"), tree.immediateDominator("d"));
+    assertEquals(Optional.of("d"), tree.immediateDominator("e"));
+    assertTrue(tree.dominates("c", "e"));
+    assertTrue(tree.dominates("d", "d"));
+    assertFalse(tree.dominates("a", "c"));
+    assertFalse(tree.reachable("x"));
+    assertFalse(tree.dominates("x", "d"));
+    assertEquals(Arrays.asList("c", "d", "e"), tree.dominated("c"));
+    assertEquals(Collections.emptyList(), tree.dominated("x"));
+  }
+
+  @Test
+  void testRandomGraphs() {
+    final Random random = new Random(42);
+    for(int round = 0; round < 30; round++) {
+      final MutableGraph<Integer> graph = GraphBuilder.directed().allowsSelfLoops(true).build();
+      final int size = 2 + random.nextInt(30);
+      for(int i = 0; i < size; i++) {
+        graph.addNode(i);
+      }
+      for(int i = 0; i < size * 2; i++) {
+        graph.putEdge(random.nextInt(size), random.nextInt(size));
+      }
+
+      final DominatorTree<Integer> tree = DominatorTree.of(graph, 0);
+      final Set<Integer> reachable = Graphs.reachableNodes(graph, 0);
+      for(int a = 0; a < size; a++) {
+        // a dominates b if b cannot be reached from the root without going through a
+        final Set<Integer> avoiding = new HashSet<>();
+        if(a != 0) {
+          final MutableGraph<Integer> copy = Graphs.copyOf(graph);
+          copy.removeNode(a);
+          avoiding.addAll(Graphs.reachableNodes(copy, 0));
+        }
+        for(int b = 0; b < size; b++) {
+          final boolean expected = reachable.contains(a) && reachable.contains(b) && !avoiding.contains(b);
+          assertEquals(expected, tree.dominates(a, b), "round " + round + ": " + a + " dominates " + b);
+        }
+        assertEquals(reachable.contains(a), tree.reachable(a));
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalTopologicalOrderTest {
+  @Test
+  void testPutEdge() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.addNode(1);
+    graph.addNode(2);
+    graph.addNode(3);
+
+    final IncrementalTopologicalOrder<Integer> order = new IncrementalTopologicalOrder<>(graph);
+    assertEquals(Arrays.asList(1, 2, 3), order.order());
+    order.putEdge(3, 1);
+    order.putEdge(2, 3);
+    assertEquals(Arrays.asList(2, 3, 1), order.order());
+  }
+
+  @Test
+  void testPutEdgeWithCircle() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+
+    final IncrementalTopologicalOrder<Integer> order = new IncrementalTopologicalOrder<>(graph);
+    final CyclePresentException exception = assertThrows(CyclePresentException.class, () -> order.putEdge(3, 1));
+    assertEquals(Arrays.asList(3, 1, 2), exception.components().iterator().next());
+    assertFalse(graph.successors(3).contains(1));
+    assertEquals(Arrays.asList(1, 2, 3), order.order());
+  }
+
+  @Test
+  void testRandomEdits() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final IncrementalTopologicalOrder<Integer> order = new IncrementalTopologicalOrder<>(graph);
+    final Random random = new Random(42);
+    for(int i = 0; i < 2000; i++) {
+      final int source = random.nextInt(100);
+      final int target = random.nextInt(100);
+      if(source == target) {
+        order.removeNode(source);
+        continue;
+      }
+      try {
+        order.putEdge(source, target);
+      } catch(final CyclePresentException e) {
+        order.removeEdge(target, source);
+      }
+    }
+
+    final List<Integer> results = order.order();
+    assertEquals(graph.nodes().size(), results.size());
+    for(final EndpointPair<Integer> edge : graph.edges()) {
+      assertTrue(results.indexOf(edge.source()) < results.indexOf(edge.target()));
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedGraphTest {
+  private static final Function<String, byte[]> ENCODER = node -> node.getBytes(StandardCharsets.UTF_8);
+  private static final Function<ByteBuffer, String> DECODER = bytes -> StandardCharsets.UTF_8.decode(bytes).toString();
+
+  @Test
+  void testRoundTrip() throws IOException {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("a", "b");
+    graph.putEdge("a", "c");
+    graph.putEdge("c", "b");
+    graph.addNode("d");
+
+    final Path path = Files.createTempFile("graph", ".bin");
+    try {
+      MappedGraph.write(graph, path, ENCODER, true);
+      final MappedGraph<String> mapped = MappedGraph.open(path, DECODER);
+      assertEquals(graph.nodes(), mapped.nodes());
+      assertEquals(graph.edges(), mapped.edges());
+      assertEquals(ImmutableSet.of("a", "c"), mapped.predecessors("b"));
+      assertEquals(ImmutableSet.of("b", "c"), mapped.successors("a"));
+      assertTrue(mapped.successors("c").contains("b"));
+      assertFalse(mapped.successors("c").contains("e"));
+      assertThrows(IllegalArgumentException.class, () -> mapped.successors("e"));
+
+      final List<String> order = mapped.topologicalOrder().orElseThrow(AssertionError::new);
+      assertEquals(Arrays.asList("a", "d", "c", "b"), order);
+      assertEquals(order, MoreGraphs.topologicalSort(mapped));
+      assertEquals(Arrays.asList("a", "c", "b", "d"), MoreGraphs.orderedTopologicalSort(mapped));
+
+      // the indexed form is built once, and its transpose comes from the stored predecessors
+      final IndexedGraph<String> indexed = mapped.indexed();
+      assertSame(indexed, mapped.indexed());
+      assertArrayEquals(IndexedGraph.of(graph).transpose().offsets, indexed.transpose().offsets);
+      assertArrayEquals(IndexedGraph.of(graph).transpose().targets, indexed.transpose().targets);
+      assertSame(indexed, indexed.transpose().transpose());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void testWithoutOrder() throws IOException {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("a", "b");
+    graph.putEdge("b", "a");
+
+    final Path path = Files.createTempFile("graph", ".bin");
+    try {
+      assertThrows(CyclePresentException.class, () -> MappedGraph.write(graph, path, ENCODER, true));
+      MappedGraph.write(graph, path, ENCODER, false);
+      final MappedGraph<String> mapped = MappedGraph.open(path, DECODER);
+      assertFalse(mapped.topologicalOrder().isPresent());
+      assertThrows(CyclePresentException.class, () -> MoreGraphs.topologicalSort(mapped));
+
+      Files.write(path, new byte[]{1, 2, 3});
+      assertThrows(IOException.class, () -> MappedGraph.open(path, DECODER));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void testCorrupt() throws IOException {
+    final MutableGraph<String> graph = GraphBuilder.directed().build();
+    graph.putEdge("a", "b");
+
+    final Path path = Files.createTempFile("graph", ".bin");
+    try {
+      MappedGraph.write(graph, path, ENCODER, false);
+      final byte[] bytes = Files.readAllBytes(path);
+      // the header holds five ints, followed by the successor offsets, the successor at 32,
+      // the predecessor offsets, the predecessor at 48, and the node offsets from 52
+      assertCorrupt(path, bytes, 12, Integer.MAX_VALUE);
+      assertCorrupt(path, bytes, 16, -1);
+      assertCorrupt(path, bytes, 28, 2);
+      assertCorrupt(path, bytes, 32, 2);
+      assertCorrupt(path, bytes, 48, -1);
+      assertCorrupt(path, bytes, 60, Integer.MAX_VALUE);
+
+      Files.write(path, bytes);
+      assertEquals(graph.edges(), MappedGraph.open(path, DECODER).edges());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void assertCorrupt(final Path path, final byte[] bytes, final int position, final int value) throws IOException {
+    final byte[] corrupt = bytes.clone();
+    ByteBuffer.wrap(corrupt).putInt(position, value);
+    Files.write(path, corrupt);
+    assertThrows(IOException.class, () -> MappedGraph.open(path, DECODER));
+  }
+}
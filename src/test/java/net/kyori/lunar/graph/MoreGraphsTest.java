@@ -23,15 +23,28 @@
  */
 package net.kyori.lunar.graph;
 
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.Graph;
 import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
 import com.google.common.graph.MutableGraph;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MoreGraphsTest {
   @Test
@@ -109,4 +122,279 @@ class MoreGraphsTest {
     assertEquals(3, results.get(3).intValue());
     assertEquals(2, results.get(4).intValue());
   }
+
+  @Test
+  void testTopologicalSortLarge() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    for(int i = 0; i < 1000; i++) {
+      graph.addNode(i);
+    }
+    for(int i = 999; i > 0; i--) {
+      graph.putEdge(i, i - 1);
+      if(i % 7 == 0) {
+        graph.putEdge(i, i / 7);
+      }
+    }
+
+    final List<Integer> results = MoreGraphs.topologicalSort(graph);
+    assertEquals(graph.nodes().size(), results.size());
+    for(final EndpointPair<Integer> edge : graph.edges()) {
+      assertTrue(results.indexOf(edge.source()) < results.indexOf(edge.target()));
+    }
+  }
+
+  @Test
+  void testTopologicalLayers() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.addNode(4);
+    graph.addNode(1);
+    graph.addNode(5);
+    graph.putEdge(1, 2);
+    graph.putEdge(4, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(1, 3);
+
+    final List<List<Integer>> results = MoreGraphs.orderedTopologicalLayers(graph);
+    assertEquals(3, results.size());
+    assertEquals(Arrays.asList(1, 4, 5), results.get(0));
+    assertEquals(Collections.singletonList(2), results.get(1));
+    assertEquals(Collections.singletonList(3), results.get(2));
+  }
+
+  @Test
+  void testTopologicalLayersWithCircle() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 2);
+
+    assertThrows(CyclePresentException.class, () -> MoreGraphs.topologicalLayers(graph));
+  }
+
+  @Test
+  void testCondensedTopologicalSort() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 2);
+    graph.putEdge(3, 4);
+
+    final List<Set<Integer>> results = MoreGraphs.condensedTopologicalSort(graph);
+    assertEquals(3, results.size());
+    assertEquals(Collections.singleton(1), results.get(0));
+    assertEquals(new HashSet<>(Arrays.asList(2, 3)), results.get(1));
+    assertEquals(Collections.singleton(4), results.get(2));
+  }
+
+  @Test
+  void testTopologicalStream() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 4);
+    graph.putEdge(4, 3);
+
+    assertEquals(Arrays.asList(1, 2), MoreGraphs.topologicalStream(graph).limit(2).collect(Collectors.toList()));
+    assertThrows(CyclePresentException.class, () -> MoreGraphs.topologicalStream(graph).count());
+  }
+
+  @Test
+  void testCompact() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.addNode(5);
+    graph.putEdge(1, 2);
+    graph.putEdge(1, 3);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 4);
+
+    final Graph<Integer> compact = MoreGraphs.compact(graph);
+    assertTrue(Graphs.equivalent(graph, compact));
+    assertEquals(graph.nodes(), compact.nodes());
+    assertEquals(new HashSet<>(Arrays.asList(1, 2)), compact.predecessors(3));
+    assertEquals(Collections.singleton(4), compact.successors(3));
+    assertEquals(4, compact.edges().size());
+    assertEquals(MoreGraphs.topologicalSort(graph), MoreGraphs.topologicalSort(compact));
+  }
+
+  @Test
+  void testTransitiveReduction() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(1, 3);
+    graph.putEdge(3, 4);
+    graph.putEdge(1, 4);
+    graph.putEdge(5, 4);
+
+    final Graph<Integer> reduction = MoreGraphs.transitiveReduction(graph);
+    assertEquals(graph.nodes(), reduction.nodes());
+    assertEquals(4, reduction.edges().size());
+    assertEquals(Collections.singleton(2), reduction.successors(1));
+    assertEquals(Collections.singleton(4), reduction.successors(5));
+    assertTrue(Graphs.equivalent(Graphs.transitiveClosure(graph), Graphs.transitiveClosure(reduction)));
+  }
+
+  @Test
+  void testTransitiveReductionRandom() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final Random random = new Random(42);
+    for(int i = 0; i < 300; i++) {
+      graph.addNode(i);
+    }
+    for(int i = 0; i < 1200; i++) {
+      final int source = random.nextInt(299);
+      graph.putEdge(source, source + 1 + random.nextInt(Math.min(40, 299 - source)));
+    }
+
+    final Graph<Integer> reduction = MoreGraphs.transitiveReduction(graph);
+    assertTrue(Graphs.equivalent(Graphs.transitiveClosure(graph), Graphs.transitiveClosure(reduction)));
+    for(final EndpointPair<Integer> edge : reduction.edges()) {
+      final MutableGraph<Integer> without = Graphs.copyOf(reduction);
+      without.removeEdge(edge.source(), edge.target());
+      assertFalse(Graphs.reachableNodes(without, edge.source()).contains(edge.target()));
+    }
+  }
+
+  @Test
+  void testTransitiveReductionLarge() {
+    // every shortcut is redundant, and each bit set only needs to reach a few positions ahead
+    final MutableGraph<Integer> graph = GraphBuilder.directed().expectedNodeCount(200_000).build();
+    for(int i = 1; i < 200_000; i++) {
+      graph.putEdge(i - 1, i);
+      if(i >= 2) {
+        graph.putEdge(i - 2, i);
+      }
+      if(i >= 4 && i % 2 == 0) {
+        graph.putEdge(i - 4, i);
+      }
+    }
+
+    final Graph<Integer> reduction = MoreGraphs.transitiveReduction(graph);
+    assertEquals(200_000, reduction.nodes().size());
+    assertEquals(199_999, reduction.edges().size());
+    assertEquals(Collections.singleton(100_000), reduction.successors(99_999));
+    assertEquals(Collections.singleton(99_999), reduction.predecessors(100_000));
+  }
+
+  @Test
+  void testTopologicalSortComparatorLexicographic() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final Random random = new Random(42);
+    for(int i = 0; i < 200; i++) {
+      graph.addNode(i);
+    }
+    for(int i = 0; i < 400; i++) {
+      final int source = random.nextInt(200);
+      final int target = random.nextInt(200);
+      if(source < target) {
+        graph.putEdge(source, target);
+      }
+    }
+
+    final List<Integer> results = MoreGraphs.orderedTopologicalSort(graph, Comparator.comparing(String::valueOf));
+    // every node comes out as the smallest of the nodes whose prerequisites are met
+    final Set<Integer> done = new HashSet<>();
+    for(final Integer node : results) {
+      for(final Integer other : graph.nodes()) {
+        if(!done.contains(other) && done.containsAll(graph.predecessors(other))) {
+          assertTrue(String.valueOf(node).compareTo(String.valueOf(other)) <= 0);
+        }
+      }
+      done.add(node);
+    }
+  }
+
+  @Test
+  void testFindCycle() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 4);
+    graph.putEdge(4, 1);
+    graph.putEdge(1, 3);
+    graph.putEdge(4, 5);
+
+    assertTrue(MoreGraphs.hasCycle(graph));
+    final List<Integer> cycle = MoreGraphs.findCycle(graph).orElseThrow(AssertionError::new);
+    assertEquals(3, cycle.size());
+    for(int i = 0; i < cycle.size(); i++) {
+      assertTrue(graph.successors(cycle.get(i)).contains(cycle.get((i + 1) % cycle.size())));
+    }
+
+    graph.removeEdge(4, 1);
+    assertFalse(MoreGraphs.hasCycle(graph));
+    assertFalse(MoreGraphs.findCycle(graph).isPresent());
+  }
+
+  @Test
+  void testCyclePresentMessageIsBounded() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    for(int i = 1; i < 100_000; i++) {
+      graph.putEdge(i - 1, i);
+    }
+    graph.putEdge(99_999, 0);
+    graph.putEdge(100_000, 100_001);
+    graph.putEdge(100_001, 100_000);
+
+    final CyclePresentException exception = assertThrows(CyclePresentException.class, () -> MoreGraphs.topologicalSort(graph));
+    assertTrue(exception.getMessage().length() < CyclePresentException.MAXIMUM_RENDERED_LENGTH);
+    assertTrue(exception.getMessage().endsWith("(1 more cycles)"));
+    assertEquals(2, exception.components().size());
+    assertThrows(UnsupportedOperationException.class, () -> exception.components().iterator().next().clear());
+  }
+
+  @Test
+  void testTopologicalSortFromRoots() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(4, 3);
+    graph.putEdge(5, 6);
+    graph.putEdge(6, 5);
+
+    assertEquals(Arrays.asList(2, 3), MoreGraphs.topologicalSort(graph, Collections.singleton(2)));
+    assertEquals(Arrays.asList(1, 2), MoreGraphs.prerequisiteTopologicalSort(graph, Collections.singleton(2)));
+    assertEquals(4, MoreGraphs.prerequisiteTopologicalSort(graph, Collections.singleton(3)).size());
+    assertThrows(CyclePresentException.class, () -> MoreGraphs.topologicalSort(graph, Collections.singleton(5)));
+  }
+
+  @Test
+  void testStronglyConnectedComponents() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 1);
+    graph.putEdge(2, 3);
+
+    final Collection<Collection<Integer>> components = MoreGraphs.stronglyConnectedComponents(graph);
+    assertEquals(new HashSet<>(Arrays.asList(new HashSet<>(Arrays.asList(1, 2)), Collections.singleton(3))), components.stream().map(HashSet::new).collect(Collectors.toSet()));
+    assertThrows(UnsupportedOperationException.class, components::clear);
+    assertThrows(UnsupportedOperationException.class, () -> components.iterator().next().clear());
+  }
+
+  @Test
+  void testPartitionedTopologicalSort() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(3, 2);
+    graph.putEdge(4, 5);
+    graph.putEdge(5, 4);
+    graph.addNode(6);
+
+    final PartitionedTopologicalSort<Integer> sort = MoreGraphs.partitionedTopologicalSort(graph);
+    assertEquals(3, sort.partitions().size());
+    assertEquals(Arrays.asList(1, 3, 2), sort.partition(2).order());
+    assertEquals(Collections.singletonList(6), sort.partition(6).order());
+    assertTrue(sort.partition(4).cycles().isPresent());
+    assertFalse(sort.partition(1).cycles().isPresent());
+    assertTrue(sort.hasCycles());
+    final CyclePresentException exception = assertThrows(CyclePresentException.class, sort::order);
+    assertEquals(1, exception.components().size());
+    final CyclePresentException first = assertThrows(CyclePresentException.class, sort.partition(4)::order);
+    final CyclePresentException second = assertThrows(CyclePresentException.class, sort.partition(4)::order);
+    assertNotSame(first, second);
+    assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList(4, 5))), first.components().stream().map(HashSet::new).collect(Collectors.toList()));
+
+    graph.removeEdge(5, 4);
+    assertEquals(Arrays.asList(1, 3, 2, 4, 5, 6), MoreGraphs.partitionedTopologicalSort(graph).order());
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * This file is part of lunar, licensed under the MIT License.
+ *
+ * Copyright (c) 2017-2018 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.lunar.graph;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.MutableGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReachabilityIndexTest {
+  @Test
+  void testReaches() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.addNode(5);
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 3);
+    graph.putEdge(3, 2);
+    graph.putEdge(3, 4);
+
+    final ReachabilityIndex<Integer> index = ReachabilityIndex.of(graph);
+    assertTrue(index.reaches(1, 4));
+    assertTrue(index.reaches(3, 2));
+    assertTrue(index.reaches(5, 5));
+    assertFalse(index.reaches(4, 1));
+    assertFalse(index.reaches(1, 5));
+    assertTrue(index.memoryFootprint() > 0);
+    assertTrue(index.memoryFootprint() < ReachabilityIndex.maximumMemoryFootprint(graph));
+  }
+
+  @Test
+  void testMaximumFootprint() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    for(int i = 1; i < 1000; i++) {
+      graph.putEdge(i - 1, i);
+    }
+
+    final long footprint = ReachabilityIndex.maximumMemoryFootprint(graph);
+    assertEquals(footprint, ReachabilityIndex.of(graph, footprint).memoryFootprint());
+    assertThrows(IllegalArgumentException.class, () -> ReachabilityIndex.of(graph, footprint - 1));
+  }
+
+  @Test
+  void testRandom() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final Random random = new Random(42);
+    for(int i = 0; i < 300; i++) {
+      graph.addNode(i);
+    }
+    for(int i = 0; i < 400; i++) {
+      final int source = random.nextInt(300);
+      final int target = random.nextInt(300);
+      if(source != target) {
+        graph.putEdge(source, target);
+      }
+    }
+
+    final ReachabilityIndex<Integer> index = ReachabilityIndex.of(graph);
+    for(final Integer source : graph.nodes()) {
+      final Set<Integer> reachable = Graphs.reachableNodes(graph, source);
+      for(final Integer target : graph.nodes()) {
+        assertEquals(reachable.contains(target), index.reaches(source, target));
+      }
+    }
+  }
+}
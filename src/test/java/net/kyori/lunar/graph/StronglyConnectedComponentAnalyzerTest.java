@@ -27,6 +27,12 @@ import com.google.common.graph.GraphBuilder;
 import com.google.common.graph.MutableGraph;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class StronglyConnectedComponentAnalyzerTest {
@@ -68,4 +74,60 @@ class StronglyConnectedComponentAnalyzerTest {
     assertEquals(2, analyzer.components().size());
     // two strongly connected component {1, 2, 3} {4, 5, 6}
   }
+
+  @Test
+  void testCrossEdgeIntoFinishedComponent() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 1);
+    graph.putEdge(3, 2);
+    graph.putEdge(3, 4);
+    graph.putEdge(4, 3);
+
+    final StronglyConnectedComponentAnalyzer<Integer> analyzer = new StronglyConnectedComponentAnalyzer<>(graph);
+    analyzer.analyze();
+    assertEquals(2, analyzer.components().size());
+    // two strongly connected component {1, 2} {3, 4}
+  }
+
+  @Test
+  void testDeepChain() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final int size = 200_000;
+    for(int i = 1; i < size; i++) {
+      graph.putEdge(i - 1, i);
+    }
+    graph.putEdge(size - 1, 0);
+
+    final StronglyConnectedComponentAnalyzer<Integer> analyzer = new StronglyConnectedComponentAnalyzer<>(graph);
+    analyzer.analyze();
+    assertEquals(1, analyzer.components().size());
+    assertEquals(size, analyzer.components().iterator().next().size());
+  }
+
+  @Test
+  void testParallel() {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().build();
+    final Random random = new Random(42);
+    for(int i = 0; i < 5000; i++) {
+      graph.addNode(i);
+    }
+    for(int i = 0; i < 6000; i++) {
+      final int source = random.nextInt(5000);
+      final int target = random.nextInt(5000);
+      if(source != target) {
+        graph.putEdge(source, target);
+      }
+    }
+
+    final StronglyConnectedComponentAnalyzer<Integer> sequential = new StronglyConnectedComponentAnalyzer<>(graph);
+    sequential.analyze();
+    final StronglyConnectedComponentAnalyzer<Integer> parallel = new StronglyConnectedComponentAnalyzer<>(graph);
+    parallel.analyze(ForkJoinPool.commonPool(), 16);
+    assertEquals(components(sequential), components(parallel));
+  }
+
+  private static Set<Set<Integer>> components(final StronglyConnectedComponentAnalyzer<Integer> analyzer) {
+    return analyzer.components().stream().map(HashSet::new).collect(Collectors.toSet());
+  }
 }